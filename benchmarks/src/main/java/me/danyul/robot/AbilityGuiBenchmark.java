@@ -0,0 +1,62 @@
+package me.danyul.robot;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// opening the ability menu: a fresh menu draws every slot, a kept menu
+// only redraws what changed since it was last shown
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AbilityGuiBenchmark {
+
+    @Param({"false", "true"})
+    boolean started;
+
+    private HunterState hunter;
+    private final AbilityDefinition[] defs = new AbilityDefinition[Ability.values().length];
+    private AbilityMenu kept;
+
+    @Setup
+    public void setup() {
+        StandIns.install();
+        Match match = new Match("bench");
+        hunter = new HunterState(UUID.randomUUID(), match);
+        match.hunters.put(hunter.id, hunter);
+        if (started) {
+            // past every unlock so the countdown lore doesn't change mid-run
+            match.gameStartTime = System.currentTimeMillis() - 1000L * 3600;
+            hunter.startCooldown(Ability.ROCKET_JUMP, System.currentTimeMillis(), HunterState.ONCE_PER_RUN);
+            hunter.pendingAbility = Ability.SPEED_OVERDRIVE;
+        }
+        // the menu only reads unlock and cooldown, so no stages are needed
+        for (Ability a : Ability.values()) {
+            defs[a.ordinal()] = new AbilityDefinition(a, a.defaultUnlockSeconds, 60_000L, new AbilityStage[0]);
+        }
+
+        kept = new AbilityMenu();
+        kept.refresh(hunter, defs);
+    }
+
+    @Benchmark
+    public int rebuild() {
+        return new AbilityMenu().refresh(hunter, defs);
+    }
+
+    @Benchmark
+    public int refreshKept() {
+        return kept.refresh(hunter, defs);
+    }
+
+    // select a different ability each call: two slots change
+    @Benchmark
+    public int toggleSelection() {
+        hunter.pendingAbility = hunter.pendingAbility == Ability.SHIELD ? Ability.SPEED_OVERDRIVE : Ability.SHIELD;
+        return kept.refresh(hunter, defs);
+    }
+}
@@ -0,0 +1,50 @@
+package me.danyul.robot;
+
+import org.bukkit.ChatColor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// resolving a menu click back to its ability: the old display name scan
+// against the holder check + slot index the click handler uses now
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AbilityLookupBenchmark {
+
+    // first, middle and last ability, plus an item that isn't one
+    @Param({"SPEED_OVERDRIVE", "MINES", "THERMAL_VISION", "MISS"})
+    String clicked;
+
+    private String displayName;
+    private int rawSlot;
+    private Object holder;
+
+    @Setup
+    public void setup() {
+        StandIns.install();
+        holder = new AbilityMenu();
+        rawSlot = clicked.equals("MISS") ? 30 : Ability.valueOf(clicked).ordinal();
+        // copy so equals() can't short-circuit on identity
+        displayName = new String(clicked.equals("MISS")
+                ? ChatColor.AQUA + "Runner Tracker"
+                : Ability.valueOf(clicked).displayName);
+    }
+
+    @Benchmark
+    public Ability byDisplayName() {
+        for (Ability a : Ability.values()) {
+            if (a.displayName.equals(displayName)) return a;
+        }
+        return null;
+    }
+
+    @Benchmark
+    public Ability byHolderAndSlot() {
+        if (!(holder instanceof AbilityMenu)) return null;
+        return ((AbilityMenu) holder).abilityAt(rawSlot);
+    }
+}
@@ -0,0 +1,70 @@
+package me.danyul.robot;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// one compass tick (every 20 ticks in game) for a match with N hunters.
+// with the runner idle the tracker should do no inventory or meta work
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompassBenchmark {
+
+    @Param({"1", "10", "100"})
+    int hunters;
+
+    @Param({"false", "true"})
+    boolean runnerMoving;
+
+    private Match match;
+    private CompassTracker tracker;
+    private RunnerTracker runnerTracker;
+    private RunnerTracker.Snapshot runner;
+    private Location runnerPos;
+    private Player[] hunterPlayers;
+
+    @Setup
+    public void setup() {
+        StandIns.install();
+        StandIns.forgetPlayers();
+
+        World world = StandIns.world("bench");
+        runnerPos = new Location(world, 0, 64, 0);
+        Player runnerPlayer = StandIns.player("runner", runnerPos);
+
+        match = new Match("bench");
+        runnerTracker = new RunnerTracker();
+        runner = new RunnerTracker.Snapshot(runnerPlayer);
+        match.runners.add(runner.id);
+        match.runnerSnapshots.put(runner.id, runner);
+        runnerTracker.sample(match, runner);
+        hunterPlayers = new Player[hunters];
+        for (int i = 0; i < hunters; i++) {
+            Player hunter = StandIns.player("hunter" + i, new Location(world, i * 3, 64, 40));
+            hunter.getInventory().setItem(4, StandIns.compass());
+            match.hunters.put(hunter.getUniqueId(), new HunterState(hunter.getUniqueId(), match));
+            hunterPlayers[i] = hunter;
+        }
+
+        tracker = new CompassTracker(null);
+        tracker.setUpdateDistance(2.0);
+        tick(); // first pass finds and styles every compass
+    }
+
+    // the runner's sample, then every hunter's once-a-second task back to back
+    @Benchmark
+    public void tick() {
+        if (runnerMoving) runnerPos.setX(runnerPos.getX() + 3.0);
+        runnerTracker.sample(match, runner);
+        for (Player hunter : hunterPlayers) {
+            tracker.track(hunter, match);
+        }
+    }
+}
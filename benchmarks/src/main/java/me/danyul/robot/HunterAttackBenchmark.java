@@ -0,0 +1,40 @@
+package me.danyul.robot;
+
+import org.bukkit.Material;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// damage bonus and cooldown looked up on every hunter melee hit
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HunterAttackBenchmark {
+
+    @Param({"WOODEN_SWORD", "DIAMOND_SWORD", "NETHERITE_AXE", "STICK", "NONE"})
+    String weapon;
+
+    private Material material;
+    private double base = 5.0;
+    private WeaponTable table;
+
+    @Setup
+    public void setup() {
+        material = weapon.equals("NONE") ? null : Material.valueOf(weapon);
+        // no config section: every type gets the defaults, same cost as a filled table
+        table = WeaponTable.load(null);
+    }
+
+    @Benchmark
+    public double damage() {
+        return base + table.bonus(material);
+    }
+
+    @Benchmark
+    public long cooldown() {
+        return table.cooldownMillis(material);
+    }
+}
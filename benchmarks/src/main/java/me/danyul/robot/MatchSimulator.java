@@ -0,0 +1,511 @@
+package me.danyul.robot;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.Sound;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.UUID;
+
+// headless load generator for capacity planning. builds matches of synthetic
+// hunters and runners on StandIns players and drives them tick by tick
+// through the plugin's own code: runner sampling, mine checks, compass + hud,
+// ability casts through the engine, hunter hits, the timer wheel and the
+// feedback flush (with mine shimmer). runner-prediction searches run
+// between ticks, standing in for the async pool, and are reported apart
+// from the tick. prints
+// the cost of a simulated tick against the 50 ms budget and the allocation
+// rate, once per hunter count, so the rows read as a scaling curve:
+//
+//   java -cp benchmarks/target/benchmarks.jar me.danyul.robot.MatchSimulator
+//        [--hunters 10,100,1000,5000] [--runners 2] [--matches 1] [--mines 1000]
+//        [--ticks 1200] [--warmup 400] [--casts 0.05] [--trigger move|timer]
+//        [--max-sweep 16] [--seed 42]
+//
+// runs on one thread: on plain Paper all of this is main-thread work, so the
+// sum is what one server tick pays (Folia would spread it across regions).
+// potions and sounds need the server's registries, so the simulated
+// abilities only use the stages that don't; cooldowns are zero because
+// simulated seconds go by much faster than real ones, --casts (chance per
+// hunter per second) sets the cast rate instead
+public final class MatchSimulator {
+
+    private MatchSimulator() {
+    }
+
+    private static final double BUDGET_NANOS = 50_000_000.0;
+    // runners wander inside +-FIELD blocks around the origin
+    private static final double FIELD = 256.0;
+    private static final double RUNNER_SPEED = 0.28;  // blocks per tick, sprinting
+    private static final double HUNTER_SPEED = 0.20;  // slowed robots
+    private static final double REACH = 3.0;
+
+    // ---------- options ----------
+
+    static final class Options {
+        int[] hunters = {10, 100, 1000, 5000};
+        int runners = 2;
+        int matches = 1;
+        int mines = 1000;
+        int ticks = 1200;
+        int warmup = 400;
+        double casts = 0.05;
+        Settings.MineTriggerMode trigger = Settings.MineTriggerMode.MOVE;
+        double maxSweep = 16.0;
+        long seed = 42L;
+
+        static Options parse(String[] args) {
+            Options o = new Options();
+            for (int i = 0; i < args.length; i++) {
+                String flag = args[i];
+                if (i + 1 >= args.length) throw new IllegalArgumentException(flag + " needs a value");
+                String value = args[++i];
+                switch (flag) {
+                    case "--hunters":
+                        String[] parts = value.split(",");
+                        o.hunters = new int[parts.length];
+                        for (int p = 0; p < parts.length; p++) {
+                            o.hunters[p] = Integer.parseInt(parts[p].trim());
+                        }
+                        break;
+                    case "--runners":
+                        o.runners = Integer.parseInt(value);
+                        break;
+                    case "--matches":
+                        o.matches = Integer.parseInt(value);
+                        break;
+                    case "--mines":
+                        o.mines = Integer.parseInt(value);
+                        break;
+                    case "--ticks":
+                        o.ticks = Integer.parseInt(value);
+                        break;
+                    case "--warmup":
+                        o.warmup = Integer.parseInt(value);
+                        break;
+                    case "--casts":
+                        o.casts = Double.parseDouble(value);
+                        break;
+                    case "--trigger":
+                        o.trigger = Settings.MineTriggerMode.valueOf(value.toUpperCase(Locale.ROOT));
+                        break;
+                    case "--max-sweep":
+                        o.maxSweep = Double.parseDouble(value);
+                        break;
+                    case "--seed":
+                        o.seed = Long.parseLong(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown option " + flag);
+                }
+            }
+            if (o.matches < 1 || o.runners < 1 || o.ticks < 1) {
+                throw new IllegalArgumentException("--matches, --runners and --ticks must be at least 1");
+            }
+            return o;
+        }
+    }
+
+    // ---------- synthetic players ----------
+
+    private static final class SimRunner {
+        final Player player;
+        final Location pos;
+        final RunnerTracker.Snapshot snapshot;
+        double heading;
+        int blockX, blockY, blockZ;
+
+        SimRunner(Player player, Location pos) {
+            this.player = player;
+            this.pos = pos;
+            this.snapshot = new RunnerTracker.Snapshot(player);
+        }
+    }
+
+    private static final class SimHunter {
+        final Player player;
+        final Location pos;
+        final HunterState state;
+        final SimRunner chasing;
+
+        SimHunter(Player player, Location pos, HunterState state, SimRunner chasing) {
+            this.player = player;
+            this.pos = pos;
+            this.state = state;
+            this.chasing = chasing;
+        }
+    }
+
+    private static final class SimMatch {
+        final Match match;
+        final World world;
+        final List<SimRunner> runners = new ArrayList<>();
+        final List<SimHunter> hunters = new ArrayList<>();
+
+        SimMatch(Match match, World world) {
+            this.match = match;
+            this.world = world;
+        }
+    }
+
+    // ---------- phases ----------
+
+    private static final String[] PHASES = {"timers", "hud_frames", "runners", "mines", "compass", "hud", "casts", "hits", "feedback"};
+    private static final int TIMERS = 0, HUD_FRAMES = 1, RUNNERS = 2, MINES = 3, COMPASS = 4, HUD = 5, CASTS = 6, HITS = 7, FEEDBACK = 8;
+
+    // one run at a fixed hunter count
+    private static final class Run {
+        final Options o;
+        final Random rnd;
+        final TickWheel timers = new TickWheel();
+        final Scheduling scheduling = new Scheduling(null);
+        final Feedback feedback = new Feedback(scheduling);
+        final Metrics.Histogram searchTime = new Metrics().histogram("prediction_search");
+        final RunnerPredictor predictor = new RunnerPredictor(scheduling, searchTime);
+        final AbilityEngine engine = new AbilityEngine(scheduling, timers, feedback, predictor);
+        final RunnerTracker runnerTracker = new RunnerTracker();
+        final CompassTracker compass = new CompassTracker(null);
+        final HunterHud hud = new HunterHud();
+        final WeaponTable weapons = WeaponTable.load(null);
+        final AbilityDefinition[] abilities = abilities();
+        final int[] unlockSeconds = new int[abilities.length];
+        final List<SimMatch> sims = new ArrayList<>();
+        final List<Match> matches = new ArrayList<>();
+
+        final long[] phaseNanos = new long[PHASES.length];
+        final Metrics.Histogram tickTime = new Metrics().histogram("tick");
+        long casts, hits, minesFired;
+        // prediction searches, run between ticks and not counted in the tick
+        long asyncNanos;
+        int tick;
+
+        Run(Options o, int hunters) {
+            this.o = o;
+            this.rnd = new Random(o.seed);
+            runnerTracker.setPublishDistance(1.0);
+            compass.setUpdateDistance(2.0);
+            for (int i = 0; i < abilities.length; i++) {
+                unlockSeconds[i] = abilities[i].unlockSeconds;
+            }
+
+            StandIns.forgetPlayers();
+            long now = System.currentTimeMillis();
+            for (int m = 0; m < o.matches; m++) {
+                World world = StandIns.world("sim" + m);
+                Match match = new Match("sim" + m);
+                match.mines.configure(300_000L, 9);
+                // well past the last unlock so every ability is in play
+                match.gameStartTime = now - 3600_000L;
+                SimMatch sim = new SimMatch(match, world);
+
+                for (int i = 0; i < o.mines; i++) {
+                    UUID owner = new UUID(rnd.nextLong(), rnd.nextLong());
+                    match.mines.add(world, (int) Math.floor(randomCoord()), 64, (int) Math.floor(randomCoord()), owner, now);
+                }
+                for (int r = 0; r < o.runners; r++) {
+                    Location pos = new Location(world, randomCoord(), 64, randomCoord());
+                    SimRunner runner = new SimRunner(StandIns.player("sim" + m + "-runner" + r, pos), pos);
+                    runner.heading = rnd.nextDouble() * Math.PI * 2;
+                    match.runners.add(runner.snapshot.id);
+                    sim.runners.add(runner);
+                }
+                int share = hunters / o.matches + (m < hunters % o.matches ? 1 : 0);
+                for (int h = 0; h < share; h++) {
+                    Location pos = new Location(world, randomCoord(), 64, randomCoord());
+                    Player player = StandIns.player("sim" + m + "-hunter" + h, pos);
+                    player.getInventory().setItem(0, new ItemStack(Material.IRON_SWORD));
+                    player.getInventory().setItem(4, StandIns.compass());
+                    HunterState state = new HunterState(player.getUniqueId(), match);
+                    match.hunters.put(state.id, state);
+                    sim.hunters.add(new SimHunter(player, pos, state, sim.runners.get(h % sim.runners.size())));
+                }
+                sims.add(sim);
+                matches.add(match);
+            }
+        }
+
+        private double randomCoord() {
+            return (rnd.nextDouble() * 2 - 1) * FIELD;
+        }
+
+        // one server tick, in the order the schedulers would run it. only the
+        // plugin calls are timed, not moving the synthetic players around
+        void tick(boolean measure) {
+            long before = pluginNanos();
+
+            long t0 = System.nanoTime();
+            timers.advance();
+            long t1 = System.nanoTime();
+            phaseNanos[TIMERS] += t1 - t0;
+
+            if (tick % 20 == 0) HunterHud.computeFrames(matches, unlockSeconds);
+            phaseNanos[HUD_FRAMES] += System.nanoTime() - t1;
+
+            for (SimMatch sim : sims) {
+                for (SimRunner runner : sim.runners) {
+                    tickRunner(sim.match, runner);
+                }
+            }
+            for (SimMatch sim : sims) {
+                List<SimHunter> hunters = sim.hunters;
+                for (int i = 0; i < hunters.size(); i++) {
+                    tickHunter(sim.match, hunters.get(i), i);
+                }
+            }
+
+            // the global tick flushes what this tick queued (next tick on a
+            // server, same cost)
+            long t2 = System.nanoTime();
+            if (tick % 20 == 0) {
+                for (Match match : matches) {
+                    feedback.shimmer(match);
+                }
+            }
+            feedback.flush();
+            phaseNanos[FEEDBACK] += System.nanoTime() - t2;
+
+            if (measure) tickTime.record(pluginNanos() - before);
+
+            long t3 = System.nanoTime();
+            StandIns.runAsync();
+            asyncNanos += System.nanoTime() - t3;
+            tick++;
+        }
+
+        private long pluginNanos() {
+            long sum = 0;
+            for (long n : phaseNanos) {
+                sum += n;
+            }
+            return sum;
+        }
+
+        // the runner's every-tick task plus the move-mode trigger
+        private void tickRunner(Match match, SimRunner runner) {
+            runner.heading += rnd.nextGaussian() * 0.15;
+            double nx = runner.pos.getX() + Math.cos(runner.heading) * RUNNER_SPEED;
+            double nz = runner.pos.getZ() + Math.sin(runner.heading) * RUNNER_SPEED;
+            if (Math.abs(nx) > FIELD || Math.abs(nz) > FIELD) {
+                runner.heading += Math.PI; // turn back at the edge
+            } else {
+                runner.pos.setX(nx);
+                runner.pos.setZ(nz);
+            }
+
+            long t0 = System.nanoTime();
+            match.runnerSnapshots.putIfAbsent(runner.snapshot.id, runner.snapshot);
+            Location at = runnerTracker.sample(match, runner.snapshot);
+            long start = System.nanoTime();
+            phaseNanos[RUNNERS] += start - t0;
+
+            boolean check;
+            if (o.trigger == Settings.MineTriggerMode.TIMER) {
+                check = runner.snapshot.samples() % Match.MINE_POLL_TICKS == 0;
+            } else {
+                // what hasChangedBlockPosition() gates the move event on
+                int bx = at.getBlockX(), by = at.getBlockY(), bz = at.getBlockZ();
+                check = bx != runner.blockX || by != runner.blockY || bz != runner.blockZ;
+                runner.blockX = bx;
+                runner.blockY = by;
+                runner.blockZ = bz;
+            }
+            if (!check) {
+                phaseNanos[MINES] += System.nanoTime() - start;
+                return;
+            }
+            List<MineIndex.Mine> fired = match.sweepMines(runner.snapshot.id, at, o.maxSweep, System.currentTimeMillis());
+            for (int i = 0; i < fired.size(); i++) {
+                Location mine = fired.get(i).location(at.getWorld());
+                feedback.sound(match, mine.getWorld(), mine.getX(), mine.getY(), mine.getZ(), Sound.ENTITY_CREEPER_PRIMED, 1f, 1.2f);
+            }
+            minesFired += fired.size();
+            fired.clear();
+            phaseNanos[MINES] += System.nanoTime() - start;
+        }
+
+        // the hunter's once-a-second task (staggered like real join times), a
+        // random cast on the same beat, and a melee hit whenever in reach
+        private void tickHunter(Match match, SimHunter hunter, int index) {
+            Location target = hunter.chasing.pos;
+            double dx = target.getX() - hunter.pos.getX(), dz = target.getZ() - hunter.pos.getZ();
+            double d = Math.sqrt(dx * dx + dz * dz);
+            if (d > REACH) {
+                hunter.pos.setX(hunter.pos.getX() + dx / d * HUNTER_SPEED);
+                hunter.pos.setZ(hunter.pos.getZ() + dz / d * HUNTER_SPEED);
+            }
+
+            if ((tick + index) % 20 == 0) {
+                long t0 = System.nanoTime();
+                RunnerTracker.Snapshot nearest = compass.track(hunter.player, match);
+                long t1 = System.nanoTime();
+                hud.update(hunter.player, hunter.state, nearest);
+                long t2 = System.nanoTime();
+                phaseNanos[COMPASS] += t1 - t0;
+                phaseNanos[HUD] += t2 - t1;
+
+                if (rnd.nextDouble() < o.casts) {
+                    cast(hunter, abilities[rnd.nextInt(abilities.length)]);
+                    phaseNanos[CASTS] += System.nanoTime() - t2;
+                }
+            }
+
+            if (d <= REACH) {
+                long start = System.nanoTime();
+                hit(hunter);
+                phaseNanos[HITS] += System.nanoTime() - start;
+            }
+        }
+
+        // triggerAbility without the chat messages
+        private void cast(SimHunter hunter, AbilityDefinition def) {
+            long now = System.currentTimeMillis();
+            if (hunter.state.checkCast(def, now) != HunterState.CastCheck.READY) return;
+            if (engine.activate(def, hunter.player, hunter.state, now)) casts++;
+        }
+
+        // handleHunterAttack without the event
+        private void hit(SimHunter hunter) {
+            Material weapon = WeaponTable.held(hunter.player);
+            if (!weapons.swing(hunter.state, weapon, System.currentTimeMillis())) return;
+            if (weapons.bonus(weapon) >= 0) hits++;
+        }
+
+        void close() {
+            timers.cancelAll();
+            feedback.clear();
+            hud.clear();
+            compass.clear();
+        }
+    }
+
+    // every stage type that works without registries, spread over the
+    // ten abilities
+    static AbilityDefinition[] abilities() {
+        AbilityDefinition[] defs = new AbilityDefinition[Ability.values().length];
+        for (Ability a : Ability.values()) {
+            AbilityStage[] stages;
+            switch (a) {
+                case SPEED_OVERDRIVE:
+                    stages = new AbilityStage[]{new AbilityEngine.Flag(HunterState.OVERDRIVE, 200, true)};
+                    break;
+                case ROCKET_JUMP:
+                    stages = new AbilityStage[]{new AbilityEngine.Velocity(AbilityEngine.Target.SELF, 0, 1.2)};
+                    break;
+                case MINES:
+                    stages = new AbilityStage[]{new AbilityEngine.Mines(3, 4.0, 4)};
+                    break;
+                case SHIELD:
+                    stages = new AbilityStage[]{new AbilityEngine.Flag(HunterState.SHIELD, 200, true)};
+                    break;
+                case SECURITY_CAMERA:
+                    stages = new AbilityStage[]{
+                            new AbilityEngine.Flag(HunterState.CAMERA, 200, true),
+                            new AbilityEngine.Teleport(20, 200, true, null)
+                    };
+                    break;
+                case GRAPPLE:
+                    stages = new AbilityStage[]{new AbilityEngine.Velocity(AbilityEngine.Target.NEAREST, 1.5, 0.5)};
+                    break;
+                case DRONE_STRIKE:
+                    stages = new AbilityStage[]{
+                            new AbilityEngine.RequireRunner(0),
+                            new AbilityEngine.Explosion(40, 2f, null, true)
+                    };
+                    break;
+                case SONAR_SCAN:
+                    stages = new AbilityStage[]{
+                            new AbilityEngine.RequireRunner(0),
+                            new AbilityEngine.Heading(100)
+                    };
+                    break;
+                default:
+                    stages = new AbilityStage[]{
+                            new AbilityEngine.Title(a.displayName, "", 5, 30, 5),
+                            new AbilityEngine.After(100, new AbilityStage[]{new AbilityEngine.Title("", "", 0, 10, 0)})
+                    };
+                    break;
+            }
+            defs[a.ordinal()] = new AbilityDefinition(a, a.defaultUnlockSeconds, 0L, stages);
+        }
+        return defs;
+    }
+
+    // ---------- main ----------
+
+    public static void main(String[] args) {
+        Options o;
+        try {
+            o = Options.parse(args);
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.exit(2);
+            return;
+        }
+        StandIns.install();
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        System.out.printf(Locale.ROOT, "%d match(es), %d runner(s) and %d mine(s) each, trigger %s, casts %.2f/s per hunter, %d ticks (+%d warmup)%n",
+                o.matches, o.runners, o.mines, o.trigger.name().toLowerCase(Locale.ROOT), o.casts, o.ticks, o.warmup);
+        System.out.printf(Locale.ROOT, "%8s %10s %10s %10s %8s %12s %10s%n",
+                "hunters", "mean", "p99", "max", "budget", "alloc/tick", "alloc/s");
+
+        for (int hunters : o.hunters) {
+            Run run = new Run(o, hunters);
+            for (int i = 0; i < o.warmup; i++) {
+                run.tick(false);
+            }
+            Arrays.fill(run.phaseNanos, 0L);
+            run.casts = run.hits = run.minesFired = 0;
+            run.asyncNanos = 0;
+            run.predictor.searches.reset();
+            run.predictor.joined.reset();
+            run.predictor.chunksCopied.reset();
+            run.feedback.sent.reset();
+            run.feedback.culled.reset();
+            run.feedback.dropped.reset();
+
+            long allocBefore = threads.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < o.ticks; i++) {
+                run.tick(true);
+            }
+            long allocated = threads.getCurrentThreadAllocatedBytes() - allocBefore;
+            run.close();
+
+            double mean = (double) run.pluginNanos() / o.ticks;
+            double allocPerTick = (double) allocated / o.ticks;
+            System.out.printf(Locale.ROOT, "%8d %10s %10s %10s %7.1f%% %12s %10s%n",
+                    hunters, millis(mean), millis(run.tickTime.percentile(0.99)), millis(run.tickTime.percentile(1.0)),
+                    mean / BUDGET_NANOS * 100, bytes(allocPerTick), bytes(allocPerTick * 20));
+
+            StringBuilder phases = new StringBuilder("         ");
+            for (int p = 0; p < PHASES.length; p++) {
+                phases.append(' ').append(PHASES[p]).append('=').append(millis((double) run.phaseNanos[p] / o.ticks));
+            }
+            System.out.println(phases);
+            System.out.printf(Locale.ROOT, "          casts=%d hits=%d mines_fired=%d feedback sent=%d culled=%d over_budget=%d%n",
+                    run.casts, run.hits, run.minesFired, run.feedback.sent.sum(), run.feedback.culled.sum(), run.feedback.dropped.sum());
+            System.out.printf(Locale.ROOT, "          prediction searches=%d shared=%d chunks_copied=%d p99=%s async=%s/tick%n",
+                    run.predictor.searches.sum(), run.predictor.joined.sum(), run.predictor.chunksCopied.sum(),
+                    millis(run.searchTime.percentile(0.99)),
+                    millis((double) run.asyncNanos / o.ticks));
+        }
+    }
+
+    private static String millis(double nanos) {
+        return String.format(Locale.ROOT, "%.3fms", nanos / 1_000_000.0);
+    }
+
+    private static String bytes(double b) {
+        if (b >= 1024 * 1024) return String.format(Locale.ROOT, "%.1fMB", b / (1024 * 1024));
+        if (b >= 1024) return String.format(Locale.ROOT, "%.1fKB", b / 1024);
+        return String.format(Locale.ROOT, "%.0fB", b);
+    }
+}
@@ -0,0 +1,107 @@
+package me.danyul.robot;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// one simulated second of the mine check for a single runner.
+// LINEAR is the old distance scan over every mine every 5 ticks, TIMER is
+// the cell index swept over the last 5 ticks' path, MOVE is the cell index
+// swept once per block the runner crosses (mines.trigger_mode: move)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MineCheckBenchmark {
+
+    public enum Trigger { LINEAR, TIMER, MOVE }
+
+    // the old trigger distance, LINEAR only
+    private static final double RADIUS = 1.5;
+
+    @Param({"10", "1000", "100000"})
+    int mines;
+
+    @Param({"LINEAR", "TIMER", "MOVE"})
+    Trigger trigger;
+
+    // 0 = standing still, 5.6 = sprinting
+    @Param({"0.0", "5.6"})
+    double blocksPerSecond;
+
+    private World world;
+    private MineIndex index;
+    private List<Location> linear;
+    private final List<MineIndex.Mine> hits = new ArrayList<>();
+    private final Location runner = new Location(null, 0, 64, 0.5);
+
+    @Setup
+    public void setup() {
+        world = StandIns.world("bench");
+        runner.setWorld(world);
+        index = new MineIndex();
+        index.configure(0L, 0); // no ttl, no cap: keep every mine
+        linear = new ArrayList<>(mines);
+
+        Random rnd = new Random(42);
+        UUID owner = UUID.randomUUID();
+        for (int i = 0; i < mines; i++) {
+            double x = rnd.nextDouble() * 2048 - 1024;
+            double z = rnd.nextDouble() * 2048 - 1024;
+            if (Math.abs(z) < 4) z += 8; // keep the runner's lane clear so nothing fires
+            if (index.add(world, (int) Math.floor(x), 64, (int) Math.floor(z), owner, 0L)) {
+                linear.add(new Location(world, x, 64, z));
+            }
+        }
+    }
+
+    @Benchmark
+    public void oneSecond(Blackhole bh) {
+        double startX = runner.getX();
+        switch (trigger) {
+            case LINEAR:
+                for (int poll = 0; poll < 4; poll++) {
+                    runner.setX(startX + blocksPerSecond * poll / 4.0);
+                    for (int i = 0; i < linear.size(); i++) {
+                        Location mine = linear.get(i);
+                        if (!mine.getWorld().equals(runner.getWorld())) continue;
+                        if (mine.distanceSquared(runner) <= RADIUS * RADIUS) bh.consume(mine);
+                    }
+                }
+                break;
+            case TIMER:
+                double polledX = startX;
+                for (int poll = 1; poll <= 4; poll++) {
+                    double toX = startX + blocksPerSecond * poll / 4.0;
+                    index.pollAlong(world, polledX, 64, 0.5, toX, 64, 0.5, hits);
+                    polledX = toX;
+                }
+                break;
+            case MOVE:
+                // one sweep per block boundary crossed this second
+                int crossings = (int) (Math.floor(startX + blocksPerSecond) - Math.floor(startX));
+                double fromX = startX;
+                for (int c = 1; c <= crossings; c++) {
+                    double toX = Math.floor(startX) + c;
+                    index.pollAlong(world, fromX, 64, 0.5, toX, 64, 0.5, hits);
+                    fromX = toX;
+                }
+                break;
+        }
+        runner.setX(startX + blocksPerSecond);
+        // wrap around so the runner stays inside the mine field
+        if (runner.getX() > 1000) runner.setX(-1000);
+
+        bh.consume(hits.size());
+        hits.clear();
+    }
+}
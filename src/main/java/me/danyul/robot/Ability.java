@@ -0,0 +1,29 @@
+package me.danyul.robot;
+
+import org.bukkit.ChatColor;
+import org.bukkit.Material;
+
+enum Ability {
+    SPEED_OVERDRIVE("speed_overdrive", ChatColor.GREEN + "Speed Overdrive", Material.SUGAR, 300),
+    ROCKET_JUMP("rocket_jump", ChatColor.AQUA + "Rocket Jump", Material.FIRE_CHARGE, 360),
+    ZOOM_MODE("zoom_mode", ChatColor.YELLOW + "Zoom Mode", Material.SPYGLASS, 420),
+    SONAR_SCAN("sonar_scan", ChatColor.BLUE + "Sonar Scan", Material.NAUTILUS_SHELL, 480),
+    MINES("mines", ChatColor.GOLD + "Shock Mines", Material.TNT, 600),
+    SHIELD("shield", ChatColor.DARK_AQUA + "Shield Mode", Material.SHIELD, 720),
+    SECURITY_CAMERA("security_camera", ChatColor.DARK_GREEN + "Security Camera", Material.ENDER_EYE, 900),
+    GRAPPLE("grapple", ChatColor.DARK_PURPLE + "Grapple Pull", Material.FISHING_ROD, 1020),
+    DRONE_STRIKE("drone_strike", ChatColor.RED + "Drone Strike", Material.FIREWORK_ROCKET, 1200),
+    THERMAL_VISION("thermal_vision", ChatColor.LIGHT_PURPLE + "Thermal Vision", Material.MAGMA_CREAM, 1320);
+
+    final String key;
+    final String displayName;
+    final Material icon;
+    final int defaultUnlockSeconds;
+
+    Ability(String key, String displayName, Material icon, int defaultUnlockSeconds) {
+        this.key = key;
+        this.displayName = displayName;
+        this.icon = icon;
+        this.defaultUnlockSeconds = defaultUnlockSeconds;
+    }
+}
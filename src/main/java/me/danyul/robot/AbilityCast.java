@@ -0,0 +1,51 @@
+package me.danyul.robot;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+
+// what an ability's stages act on. each hunter reuses one instance for
+// casts on their own thread; stages that finish later take a copy()
+final class AbilityCast {
+
+    AbilityEngine engine;
+    Player hunter;
+    HunterState state;
+    Match match;
+    // where the hunter stood when the cast started
+    final Location at = new Location(null, 0, 0, 0);
+    // nearest sampled runner in the hunter's world, if the ability needs one
+    RunnerTracker.Snapshot nearest;
+
+    void begin(AbilityEngine engine, Player hunter, HunterState state, boolean needsRunner) {
+        this.engine = engine;
+        this.hunter = hunter;
+        this.state = state;
+        this.match = state.match;
+        hunter.getLocation(at);
+        this.nearest = needsRunner ? match.nearestRunner(at) : null;
+    }
+
+    AbilityCast copy() {
+        AbilityCast c = new AbilityCast();
+        c.engine = engine;
+        c.hunter = hunter;
+        c.state = state;
+        c.match = match;
+        c.nearest = nearest;
+        c.at.setWorld(at.getWorld());
+        c.at.setX(at.getX());
+        c.at.setY(at.getY());
+        c.at.setZ(at.getZ());
+        c.at.setYaw(at.getYaw());
+        c.at.setPitch(at.getPitch());
+        return c;
+    }
+
+    // drops entity references once the cast is done
+    void end() {
+        hunter = null;
+        state = null;
+        match = null;
+        nearest = null;
+    }
+}
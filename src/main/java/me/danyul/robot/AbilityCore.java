@@ -0,0 +1,91 @@
+package me.danyul.robot;
+
+import org.bukkit.ChatColor;
+import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.persistence.PersistentDataType;
+import org.bukkit.plugin.Plugin;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+// the hunter's "ability core": one hotbar item that casts its bound ability
+// on right-click and rotates to the next unlocked one on sneak + right-click,
+// so a cast doesn't need the menu's open / click / close round trip. the
+// bound ability is the item's own PDC tag (its ordinal), so resolving a click
+// is a type check and one tag read
+final class AbilityCore {
+
+    static final Material MATERIAL = Material.NETHER_STAR;
+
+    private static final Ability[] ABILITIES = Ability.values();
+
+    private final NamespacedKey key;
+
+    AbilityCore(Plugin plugin) {
+        this.key = new NamespacedKey(plugin, "ability_core");
+    }
+
+    // bound ability, or null if the item isn't a core
+    Ability abilityOf(ItemStack item) {
+        if (item == null || item.getType() != MATERIAL) return null;
+        ItemMeta meta = item.getItemMeta();
+        if (meta == null) return null;
+        Byte ordinal = meta.getPersistentDataContainer().get(key, PersistentDataType.BYTE);
+        if (ordinal == null || ordinal < 0 || ordinal >= ABILITIES.length) return null;
+        return ABILITIES[ordinal];
+    }
+
+    boolean isCore(ItemStack item) {
+        return abilityOf(item) != null;
+    }
+
+    void bind(ItemStack item, Ability ability) {
+        ItemMeta meta = item.getItemMeta();
+        if (meta == null) return;
+        meta.setDisplayName(ChatColor.WHITE + "Ability Core: " + ability.displayName);
+        meta.setLore(Arrays.asList(
+                ChatColor.GRAY + "Right-click: activate",
+                ChatColor.GRAY + "Sneak + right-click: next ability"
+        ));
+        meta.getPersistentDataContainer().set(key, PersistentDataType.BYTE, (byte) ability.ordinal());
+        item.setItemMeta(meta);
+    }
+
+    // hands out a core unless the hunter already carries one
+    void give(Player p) {
+        Inventory inv = p.getInventory();
+        for (ItemStack item : inv.getContents()) {
+            if (isCore(item)) return;
+        }
+        ItemStack core = new ItemStack(MATERIAL);
+        bind(core, ABILITIES[0]);
+        inv.addItem(core);
+    }
+
+    void strip(Player p) {
+        Inventory inv = p.getInventory();
+        ItemStack[] contents = inv.getContents();
+        for (int i = 0; i < contents.length; i++) {
+            if (isCore(contents[i])) inv.setItem(i, null);
+        }
+    }
+
+    void removeFrom(Collection<ItemStack> drops) {
+        drops.removeIf(this::isCore);
+    }
+
+    // the ability after `current` that's unlocked at `elapsed`; before the
+    // run starts every ability is in the rotation
+    static Ability next(Ability current, boolean running, long elapsed, int[] unlockSeconds) {
+        for (int step = 1; step <= ABILITIES.length; step++) {
+            Ability candidate = ABILITIES[(current.ordinal() + step) % ABILITIES.length];
+            if (!running || unlockSeconds[candidate.ordinal()] <= elapsed) return candidate;
+        }
+        return current;
+    }
+}
@@ -0,0 +1,30 @@
+package me.danyul.robot;
+
+// one ability as loaded from config: when it unlocks, how long it cools
+// down, and the stages a cast runs. immutable once compiled
+final class AbilityDefinition {
+
+    final Ability ability;
+    final int unlockSeconds;
+    // HunterState.ONCE_PER_RUN for one cast per run
+    final long cooldownMillis;
+    final AbilityStage[] stages;
+    // some stage targets the nearest runner, so the cast looks it up once
+    final boolean needsRunner;
+
+    AbilityDefinition(Ability ability, int unlockSeconds, long cooldownMillis, AbilityStage[] stages) {
+        this.ability = ability;
+        this.unlockSeconds = unlockSeconds;
+        this.cooldownMillis = cooldownMillis;
+        this.stages = stages;
+        boolean runner = false;
+        for (AbilityStage stage : stages) {
+            runner |= stage.needsRunner();
+        }
+        this.needsRunner = runner;
+    }
+
+    boolean oncePerRun() {
+        return cooldownMillis == HunterState.ONCE_PER_RUN;
+    }
+}
@@ -0,0 +1,745 @@
+package me.danyul.robot;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Location;
+import org.bukkit.NamespacedKey;
+import org.bukkit.Particle;
+import org.bukkit.Registry;
+import org.bukkit.Sound;
+import org.bukkit.World;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.entity.Player;
+import org.bukkit.potion.PotionEffect;
+import org.bukkit.potion.PotionEffectType;
+import org.bukkit.util.Vector;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+// runs abilities as pipelines of stages built from config. everything a
+// stage needs (effects, sounds, numbers) is resolved once by compile(), so
+// a cast walks an array and only allocates where the effect itself has
+// to outlive it (timers, hand-offs to another entity's thread)
+final class AbilityEngine {
+
+    // who a stage acts on
+    enum Target { SELF, RUNNERS, NEAREST }
+
+    final Scheduling scheduling;
+    final TickWheel timers;
+    final Feedback feedback;
+    final RunnerPredictor predictor;
+
+    AbilityEngine(Scheduling scheduling, TickWheel timers, Feedback feedback, RunnerPredictor predictor) {
+        this.scheduling = scheduling;
+        this.timers = timers;
+        this.feedback = feedback;
+        this.predictor = predictor;
+    }
+
+    // runs the ability's stages on the hunter's thread; false if a stage refused
+    boolean cast(AbilityDefinition def, Player hunter, HunterState state) {
+        AbilityCast c = state.cast;
+        c.begin(this, hunter, state, def.needsRunner);
+        try {
+            if (def.needsRunner && c.nearest == null) {
+                hunter.sendMessage(ChatColor.RED + (c.match.runners.isEmpty() ? "No runner set." : "Runner not online."));
+                return false;
+            }
+            return run(def.stages, c);
+        } finally {
+            c.end();
+        }
+    }
+
+    // a cast that passed HunterState.checkCast; the cooldown only starts if
+    // it went off
+    boolean activate(AbilityDefinition def, Player hunter, HunterState state, long now) {
+        if (!cast(def, hunter, state)) return false;
+        state.startCooldown(def.ability, now, def.cooldownMillis);
+        return true;
+    }
+
+    static boolean run(AbilityStage[] stages, AbilityCast c) {
+        for (AbilityStage stage : stages) {
+            if (!stage.apply(c)) return false;
+        }
+        return true;
+    }
+
+    // action on the hunter's thread after a delay; dropped if they've left
+    void later(AbilityCast c, TickWheel.Kind kind, long delayTicks, Runnable action) {
+        Player hunter = c.hunter;
+        timers.schedule(kind, hunter.getUniqueId(), c.match, delayTicks, () -> scheduling.run(hunter, action));
+    }
+
+    // ------------------------------------------------------------------ //
+    // STAGES
+    // ------------------------------------------------------------------ //
+
+    // type: require_runner, max_distance (0 = any online runner)
+    static final class RequireRunner implements AbilityStage {
+        final double maxDistance;
+
+        RequireRunner(double maxDistance) {
+            this.maxDistance = maxDistance;
+        }
+
+        @Override
+        public boolean apply(AbilityCast c) {
+            if (c.match.runners.isEmpty()) {
+                c.hunter.sendMessage(ChatColor.RED + "No runner set.");
+                return false;
+            }
+            if (maxDistance <= 0) {
+                if (!c.match.runnerSnapshots.isEmpty()) return true;
+                c.hunter.sendMessage(ChatColor.RED + "Runner not online.");
+                return false;
+            }
+            if (c.nearest == null) {
+                c.hunter.sendMessage(ChatColor.RED + "Runner not online.");
+                return false;
+            }
+            if (c.nearest.distanceSquared(c.at.getWorld(), c.at.getX(), c.at.getY(), c.at.getZ()) > maxDistance * maxDistance) {
+                c.hunter.sendMessage(ChatColor.RED + "Runner too far (max " + (int) maxDistance + " blocks).");
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean needsRunner() {
+            return maxDistance > 0;
+        }
+    }
+
+    // type: flag, flag (overdrive|shield|camera), duration_ticks, exclusive
+    static final class Flag implements AbilityStage {
+        final int flag;
+        final long durationTicks;
+        final boolean exclusive;
+
+        Flag(int flag, long durationTicks, boolean exclusive) {
+            this.flag = flag;
+            this.durationTicks = durationTicks;
+            this.exclusive = exclusive;
+        }
+
+        @Override
+        public boolean apply(AbilityCast c) {
+            HunterState state = c.state;
+            if (exclusive && state.has(flag)) {
+                c.hunter.sendMessage(ChatColor.RED + "That's already active.");
+                return false;
+            }
+            state.set(flag);
+            if (durationTicks > 0) {
+                c.engine.later(c, TickWheel.Kind.ABILITY_RESTORE, durationTicks, () -> state.clear(flag));
+            }
+            return true;
+        }
+    }
+
+    // type: potion, target, effect, duration_ticks (-1 = until removed),
+    // amplifier, particles, icon. also type: glow, target, duration_ticks
+    static final class Potion implements AbilityStage {
+        final Target target;
+        final PotionEffect effect;
+
+        Potion(Target target, PotionEffect effect) {
+            this.target = target;
+            this.effect = effect;
+        }
+
+        @Override
+        public boolean apply(AbilityCast c) {
+            switch (target) {
+                case SELF:
+                    c.hunter.addPotionEffect(effect);
+                    break;
+                case NEAREST:
+                    if (c.nearest == null) return false;
+                    onRunner(c, c.nearest);
+                    break;
+                case RUNNERS:
+                    for (RunnerTracker.Snapshot runner : c.match.runnerSnapshots.values()) {
+                        onRunner(c, runner);
+                    }
+                    break;
+            }
+            return true;
+        }
+
+        // runners on another server are out of reach
+        private void onRunner(AbilityCast c, RunnerTracker.Snapshot runner) {
+            Player p = runner.player;
+            if (p != null) c.engine.scheduling.run(p, () -> p.addPotionEffect(effect));
+        }
+
+        @Override
+        public boolean needsRunner() {
+            return target == Target.NEAREST;
+        }
+    }
+
+    // type: remove_potion, target, effect
+    static final class RemovePotion implements AbilityStage {
+        final Target target;
+        final PotionEffectType type;
+
+        RemovePotion(Target target, PotionEffectType type) {
+            this.target = target;
+            this.type = type;
+        }
+
+        @Override
+        public boolean apply(AbilityCast c) {
+            switch (target) {
+                case SELF:
+                    c.hunter.removePotionEffect(type);
+                    break;
+                case NEAREST:
+                    if (c.nearest == null) return false;
+                    onRunner(c, c.nearest);
+                    break;
+                case RUNNERS:
+                    for (RunnerTracker.Snapshot runner : c.match.runnerSnapshots.values()) {
+                        onRunner(c, runner);
+                    }
+                    break;
+            }
+            return true;
+        }
+
+        private void onRunner(AbilityCast c, RunnerTracker.Snapshot runner) {
+            Player p = runner.player;
+            if (p != null) c.engine.scheduling.run(p, () -> p.removePotionEffect(type));
+        }
+
+        @Override
+        public boolean needsRunner() {
+            return target == Target.NEAREST;
+        }
+    }
+
+    // type: velocity. target self sets the hunter's upward speed (y);
+    // target nearest pulls that runner toward the hunter (strength, lift)
+    static final class Velocity implements AbilityStage {
+        final Target target;
+        final double strength;
+        final double y;
+
+        Velocity(Target target, double strength, double y) {
+            this.target = target;
+            this.strength = strength;
+            this.y = y;
+        }
+
+        @Override
+        public boolean apply(AbilityCast c) {
+            if (target == Target.SELF) {
+                c.hunter.setVelocity(c.hunter.getVelocity().setY(y));
+                return true;
+            }
+            if (c.nearest == null) return false;
+            Player runner = c.nearest.player;
+            if (runner == null) return false;
+            double hx = c.at.getX(), hy = c.at.getY(), hz = c.at.getZ();
+            // the pull runs on the runner's thread, from where they are by then
+            c.engine.scheduling.run(runner, () -> {
+                Location rLoc = runner.getLocation();
+                Vector v = new Vector(hx - rLoc.getX(), hy - rLoc.getY(), hz - rLoc.getZ()).normalize().multiply(strength);
+                v.setY(y);
+                runner.setVelocity(v);
+            });
+            return true;
+        }
+
+        @Override
+        public boolean needsRunner() {
+            return target != Target.SELF;
+        }
+    }
+
+    // type: teleport, offset_y, return_after_ticks (0 = stay), fly, return_message
+    static final class Teleport implements AbilityStage {
+        final double offsetY;
+        final long returnAfterTicks;
+        final boolean fly;
+        final String returnMessage;
+
+        Teleport(double offsetY, long returnAfterTicks, boolean fly, String returnMessage) {
+            this.offsetY = offsetY;
+            this.returnAfterTicks = returnAfterTicks;
+            this.fly = fly;
+            this.returnMessage = returnMessage;
+        }
+
+        @Override
+        public boolean apply(AbilityCast c) {
+            Player hunter = c.hunter;
+            Location original = c.at.clone();
+            if (fly) {
+                hunter.setAllowFlight(true);
+                hunter.setFlying(true);
+            }
+            hunter.teleportAsync(original.clone().add(0, offsetY, 0));
+            if (returnAfterTicks > 0) {
+                c.engine.later(c, TickWheel.Kind.ABILITY_RESTORE, returnAfterTicks, () -> {
+                    if (!hunter.isOnline()) return;
+                    hunter.teleportAsync(original);
+                    if (fly) hunter.setFlying(false);
+                    if (returnMessage != null) hunter.sendMessage(returnMessage);
+                });
+            }
+            return true;
+        }
+    }
+
+    // type: explosion, delay_ticks, power, sound, lead. with lead (the
+    // default) it lands where the nearest runner is predicted to be at
+    // impact, otherwise where they were at cast time; never breaks blocks or
+    // sets fire. smoke marks the spot every half second until it hits, and
+    // moves there if the path search finishes in the meantime
+    static final class Explosion implements AbilityStage {
+        private static final long TELEGRAPH_TICKS = 10;
+
+        final long delayTicks;
+        final float power;
+        final SoundSpec sound;
+        final boolean lead;
+
+        Explosion(long delayTicks, float power, SoundSpec sound, boolean lead) {
+            this.delayTicks = delayTicks;
+            this.power = power;
+            this.sound = sound;
+            this.lead = lead;
+        }
+
+        @Override
+        public boolean apply(AbilityCast c) {
+            RunnerPredictor.Prediction rough = c.nearest != null
+                    ? RunnerPredictor.extrapolate(c.nearest, lead ? delayTicks : 0) : null;
+            if (rough == null) return false;
+            // the search hands its result over from another thread
+            AtomicReference<RunnerPredictor.Prediction> aim = new AtomicReference<>(rough);
+            if (lead) c.engine.predictor.refine(c.nearest, rough, aim::set);
+
+            Scheduling scheduling = c.engine.scheduling;
+            Feedback feedback = c.engine.feedback;
+            Match match = c.match;
+            for (long t = 0; t < delayTicks; t += TELEGRAPH_TICKS) {
+                Runnable mark = () -> {
+                    RunnerPredictor.Prediction p = aim.get();
+                    feedback.particle(match, Feedback.Audience.EVERYONE, p.world, p.x, p.y + 0.2, p.z, Particle.SMOKE, 16, 0.6);
+                };
+                if (t == 0) mark.run();
+                else c.engine.timers.schedule(TickWheel.Kind.EXPLOSION, c.state.id, match, t, mark);
+            }
+            c.engine.timers.schedule(TickWheel.Kind.EXPLOSION, c.state.id, match, delayTicks, () -> {
+                RunnerPredictor.Prediction p = aim.get();
+                scheduling.run(p.location(), () -> {
+                    if (sound != null) feedback.sound(match, p.world, p.x, p.y, p.z, sound.sound, sound.volume, sound.pitch);
+                    p.world.createExplosion(p.x, p.y, p.z, power, false, false);
+                });
+            });
+            return true;
+        }
+
+        @Override
+        public boolean needsRunner() {
+            return true;
+        }
+    }
+
+    // type: heading, lead_ticks. tells the hunter which way the nearest
+    // runner is moving and where they'll be lead_ticks from now, relative
+    // to the hunter. the message waits for the path search if one runs
+    static final class Heading implements AbilityStage {
+        private static final String[] POINTS = {"N", "NE", "E", "SE", "S", "SW", "W", "NW"};
+
+        final long leadTicks;
+
+        Heading(long leadTicks) {
+            this.leadTicks = leadTicks;
+        }
+
+        @Override
+        public boolean apply(AbilityCast c) {
+            RunnerPredictor.Prediction rough = c.nearest != null ? RunnerPredictor.extrapolate(c.nearest, leadTicks) : null;
+            if (rough == null) return false;
+            Player hunter = c.hunter;
+            Scheduling scheduling = c.engine.scheduling;
+            if (!c.engine.predictor.refine(c.nearest, rough, p -> scheduling.run(hunter, () -> report(hunter, p)))) {
+                report(hunter, rough);
+            }
+            return true;
+        }
+
+        // on the hunter's thread
+        private static void report(Player hunter, RunnerPredictor.Prediction p) {
+            StringBuilder sb = new StringBuilder(96).append(ChatColor.BLUE).append("Sonar: ").append(ChatColor.GRAY);
+            double speed = p.speed();
+            boolean still = speed < 0.5;
+            if (still) {
+                sb.append("runner is holding still");
+            } else {
+                sb.append("runner heading ").append(ChatColor.WHITE).append(point(p.vx, p.vz)).append(ChatColor.GRAY)
+                        .append(" at ").append(String.format(Locale.ROOT, "%.1f", speed)).append(" m/s");
+            }
+            Location at = hunter.getLocation();
+            if (at.getWorld() == p.world) {
+                double dx = p.x - at.getX(), dz = p.z - at.getZ();
+                sb.append(", ");
+                if (!still) sb.append("in ").append(p.leadTicks / 20).append("s ");
+                sb.append('~').append((int) Math.sqrt(dx * dx + dz * dz)).append("m ")
+                        .append(point(dx, dz)).append(" of you");
+            }
+            hunter.sendMessage(sb.toString());
+        }
+
+        // compass point of a horizontal direction (-z is north)
+        private static String point(double dx, double dz) {
+            double degrees = Math.toDegrees(Math.atan2(dx, -dz));
+            return POINTS[(int) Math.floorMod(Math.round(degrees / 45.0), 8L)];
+        }
+
+        @Override
+        public boolean needsRunner() {
+            return true;
+        }
+    }
+
+    // type: mines, count, spread (blocks either side of the hunter), max_drop.
+    // each mine sits on the highest solid block of a random column, from the
+    // hunter's feet level down to max_drop below, and needs two free cells
+    // above it; anything else (a wall, a drop, a low ceiling) is rejected and
+    // another column tried. columns come from one snapshot per chunk rather
+    // than a block lookup each, and chunks this thread doesn't own are skipped
+    static final class Mines implements AbilityStage {
+        // spare columns per mine for the ones that get rejected
+        private static final int TRIES_PER_MINE = 3;
+        private static final int NO_GROUND = Integer.MIN_VALUE;
+
+        final int count;
+        final double spread;
+        final int maxDrop;
+
+        Mines(int count, double spread, int maxDrop) {
+            this.count = count;
+            this.spread = spread;
+            this.maxDrop = maxDrop;
+        }
+
+        @Override
+        public boolean apply(AbilityCast c) {
+            World world = c.at.getWorld();
+            int feetY = c.at.getBlockY();
+            int minY = Math.max(world.getMinHeight(), feetY - 1 - maxDrop);
+            int maxY = world.getMaxHeight();
+            long placedAt = System.currentTimeMillis();
+
+            // chunks already looked at this cast; a null snapshot means unusable
+            long[] keys = new long[4];
+            ChunkSnapshot[] snapshots = new ChunkSnapshot[4];
+            int chunks = 0;
+
+            int placed = 0;
+            for (int attempt = 0; attempt < count * TRIES_PER_MINE && placed < count; attempt++) {
+                int x = (int) Math.floor(c.at.getX() + (Math.random() - 0.5) * 2.0 * spread);
+                int z = (int) Math.floor(c.at.getZ() + (Math.random() - 0.5) * 2.0 * spread);
+                int cx = x >> 4, cz = z >> 4;
+                long key = MineIndex.pack(cx, 0, cz);
+
+                int slot = 0;
+                while (slot < chunks && keys[slot] != key) slot++;
+                if (slot == chunks) {
+                    if (chunks == keys.length) {
+                        keys = Arrays.copyOf(keys, chunks * 2);
+                        snapshots = Arrays.copyOf(snapshots, chunks * 2);
+                    }
+                    keys[slot] = key;
+                    snapshots[slot] = world.isChunkLoaded(cx, cz) && Bukkit.isOwnedByCurrentRegion(world, cx, cz)
+                            ? world.getChunkAt(cx, cz).getChunkSnapshot(true, false, false)
+                            : null;
+                    chunks++;
+                }
+                ChunkSnapshot snapshot = snapshots[slot];
+                if (snapshot == null) continue;
+
+                int lx = x & 15, lz = z & 15;
+                int ground = ground(snapshot, lx, lz, Math.min(feetY, snapshot.getHighestBlockYAt(lx, lz)), minY, maxY);
+                if (ground == NO_GROUND) continue;
+                if (c.match.mines.add(world, x, ground + 1, z, c.state.id, placedAt)) placed++;
+            }
+
+            if (placed == 0) {
+                c.hunter.sendMessage(ChatColor.RED + "No solid ground here for mines.");
+                return false;
+            }
+            return true;
+        }
+
+        // the column's highest solid block in [minY, top] if it has two free
+        // cells above it, else NO_GROUND
+        private static int ground(ChunkSnapshot snapshot, int lx, int lz, int top, int minY, int maxY) {
+            for (int y = top; y >= minY; y--) {
+                if (!snapshot.getBlockType(lx, y, lz).isSolid()) continue;
+                return free(snapshot, lx, y + 1, lz, maxY) && free(snapshot, lx, y + 2, lz, maxY) ? y : NO_GROUND;
+            }
+            return NO_GROUND;
+        }
+
+        private static boolean free(ChunkSnapshot snapshot, int lx, int y, int lz, int maxY) {
+            return y >= maxY || !snapshot.getBlockType(lx, y, lz).isSolid();
+        }
+    }
+
+    static final class SoundSpec {
+        final Sound sound;
+        final float volume;
+        final float pitch;
+
+        SoundSpec(Sound sound, float volume, float pitch) {
+            this.sound = sound;
+            this.volume = volume;
+            this.pitch = pitch;
+        }
+    }
+
+    // type: sound, sound (e.g. block.beacon.activate), volume, pitch, at (self|nearest)
+    static final class PlaySound implements AbilityStage {
+        final Target at;
+        final SoundSpec sound;
+
+        PlaySound(Target at, SoundSpec sound) {
+            this.at = at;
+            this.sound = sound;
+        }
+
+        @Override
+        public boolean apply(AbilityCast c) {
+            Location pos = at == Target.SELF ? c.at : c.nearest != null ? c.nearest.position() : null;
+            if (pos == null) return false;
+            c.engine.feedback.sound(c.match, pos.getWorld(), pos.getX(), pos.getY(), pos.getZ(), sound.sound, sound.volume, sound.pitch);
+            return true;
+        }
+
+        @Override
+        public boolean needsRunner() {
+            return at != Target.SELF;
+        }
+    }
+
+    // type: title, title, subtitle (& colour codes), fade_in, stay, fade_out
+    static final class Title implements AbilityStage {
+        final String title;
+        final String subtitle;
+        final int fadeIn, stay, fadeOut;
+
+        Title(String title, String subtitle, int fadeIn, int stay, int fadeOut) {
+            this.title = title;
+            this.subtitle = subtitle;
+            this.fadeIn = fadeIn;
+            this.stay = stay;
+            this.fadeOut = fadeOut;
+        }
+
+        @Override
+        public boolean apply(AbilityCast c) {
+            c.hunter.sendTitle(title, subtitle, fadeIn, stay, fadeOut);
+            return true;
+        }
+    }
+
+    // type: after, delay_ticks, stages: [...]. the nested stages run later
+    // on the hunter's thread, from where the hunter is by then. they're
+    // usually the undo of what came before, so a run stopping or the hunter
+    // leaving runs them straight away rather than skipping them
+    static final class After implements AbilityStage {
+        final long delayTicks;
+        final AbilityStage[] stages;
+
+        After(long delayTicks, AbilityStage[] stages) {
+            this.delayTicks = delayTicks;
+            this.stages = stages;
+        }
+
+        @Override
+        public boolean apply(AbilityCast c) {
+            AbilityCast later = c.copy();
+            c.engine.later(c, TickWheel.Kind.ABILITY_RESTORE, delayTicks, () -> {
+                if (!later.hunter.isOnline()) return;
+                later.hunter.getLocation(later.at);
+                run(stages, later);
+            });
+            return true;
+        }
+
+        @Override
+        public boolean needsRunner() {
+            for (AbilityStage stage : stages) {
+                if (stage.needsRunner()) return true;
+            }
+            return false;
+        }
+    }
+
+    // ------------------------------------------------------------------ //
+    // COMPILE
+    // ------------------------------------------------------------------ //
+
+    // builds every ability from the abilities section, indexed by ordinal.
+    // throws IllegalArgumentException naming the bad entry
+    static AbilityDefinition[] compile(ConfigurationSection section) {
+        Ability[] abilities = Ability.values();
+        AbilityDefinition[] defs = new AbilityDefinition[abilities.length];
+        for (Ability ability : abilities) {
+            String path = "abilities." + ability.key;
+            ConfigurationSection cfg = section != null ? section.getConfigurationSection(ability.key) : null;
+            if (cfg == null) throw new IllegalArgumentException(path + " is missing");
+
+            int unlock = Math.max(300, cfg.getInt("unlock_seconds", ability.defaultUnlockSeconds)); // minimum 5 minutes
+            long cooldownSeconds = cfg.getLong("cooldown_seconds", -1L);
+            long cooldown = cooldownSeconds < 0 ? HunterState.ONCE_PER_RUN : cooldownSeconds * 1000L;
+            AbilityStage[] stages = compileStages(cfg.getMapList("stages"), path + ".stages");
+            if (stages.length == 0) throw new IllegalArgumentException(path + ".stages is empty");
+            defs[ability.ordinal()] = new AbilityDefinition(ability, unlock, cooldown, stages);
+        }
+        return defs;
+    }
+
+    private static AbilityStage[] compileStages(List<? extends Map<?, ?>> specs, String path) {
+        AbilityStage[] stages = new AbilityStage[specs.size()];
+        for (int i = 0; i < stages.length; i++) {
+            String at = path + "[" + i + "]";
+            try {
+                stages[i] = compileStage(specs.get(i), at);
+            } catch (IllegalArgumentException | ClassCastException ex) {
+                if (ex.getMessage() != null && ex.getMessage().startsWith(at)) throw ex;
+                throw new IllegalArgumentException(at + ": " + ex.getMessage(), ex);
+            }
+        }
+        return stages;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static AbilityStage compileStage(Map<?, ?> spec, String path) {
+        String type = string(spec, "type", null);
+        if (type == null) throw new IllegalArgumentException(path + ": missing type");
+        switch (type) {
+            case "require_runner":
+                return new RequireRunner(number(spec, "max_distance", 0).doubleValue());
+            case "flag":
+                return new Flag(flag(string(spec, "flag", "")), number(spec, "duration_ticks", 0).longValue(),
+                        bool(spec, "exclusive", false));
+            case "potion": {
+                int duration = number(spec, "duration_ticks", 100).intValue();
+                return new Potion(target(spec, Target.SELF), new PotionEffect(effect(string(spec, "effect", "")),
+                        duration < 0 ? Integer.MAX_VALUE : duration, number(spec, "amplifier", 0).intValue(),
+                        false, bool(spec, "particles", true), bool(spec, "icon", true)));
+            }
+            case "glow":
+                return new Potion(target(spec, Target.RUNNERS), new PotionEffect(effect("glowing"),
+                        number(spec, "duration_ticks", 100).intValue(), 0, false, false, true));
+            case "remove_potion":
+                return new RemovePotion(target(spec, Target.SELF), effect(string(spec, "effect", "")));
+            case "velocity":
+                return new Velocity(target(spec, Target.SELF), number(spec, "strength", 1.0).doubleValue(),
+                        number(spec, "y", 0.4).doubleValue());
+            case "teleport":
+                return new Teleport(number(spec, "offset_y", 0).doubleValue(), number(spec, "return_after_ticks", 0).longValue(),
+                        bool(spec, "fly", false), colour(string(spec, "return_message", null)));
+            case "explosion":
+                return new Explosion(number(spec, "delay_ticks", 0).longValue(), number(spec, "power", 1.5).floatValue(),
+                        spec.containsKey("sound") ? sound(spec) : null, bool(spec, "lead", true));
+            case "heading":
+                return new Heading(number(spec, "lead_ticks", 100).longValue());
+            case "mines":
+                return new Mines(number(spec, "count", 3).intValue(), number(spec, "spread", 1.5).doubleValue(),
+                        number(spec, "max_drop", 4).intValue());
+            case "sound":
+                return new PlaySound(target(spec, "at", Target.SELF), sound(spec));
+            case "title":
+                return new Title(colour(string(spec, "title", "")), colour(string(spec, "subtitle", "")),
+                        number(spec, "fade_in", 5).intValue(), number(spec, "stay", 40).intValue(), number(spec, "fade_out", 10).intValue());
+            case "after": {
+                Object nested = spec.get("stages");
+                if (!(nested instanceof List)) throw new IllegalArgumentException(path + ": after needs a stages list");
+                List<Map<?, ?>> maps = new ArrayList<>();
+                for (Object o : (List<Object>) nested) {
+                    if (!(o instanceof Map)) throw new IllegalArgumentException(path + ": stages entries must be maps");
+                    maps.add((Map<?, ?>) o);
+                }
+                return new After(number(spec, "delay_ticks", 20).longValue(), compileStages(maps, path + ".stages"));
+            }
+            default:
+                throw new IllegalArgumentException(path + ": unknown stage type '" + type + "'");
+        }
+    }
+
+    // ---------- spec helpers ----------
+
+    private static String string(Map<?, ?> spec, String key, String def) {
+        Object v = spec.get(key);
+        return v != null ? v.toString() : def;
+    }
+
+    private static Number number(Map<?, ?> spec, String key, Number def) {
+        Object v = spec.get(key);
+        if (v == null) return def;
+        if (v instanceof Number) return (Number) v;
+        throw new IllegalArgumentException(key + " must be a number");
+    }
+
+    private static boolean bool(Map<?, ?> spec, String key, boolean def) {
+        Object v = spec.get(key);
+        return v instanceof Boolean ? (Boolean) v : def;
+    }
+
+    private static Target target(Map<?, ?> spec, Target def) {
+        return target(spec, "target", def);
+    }
+
+    private static Target target(Map<?, ?> spec, String key, Target def) {
+        String v = string(spec, key, null);
+        if (v == null) return def;
+        try {
+            return Target.valueOf(v.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException(key + " must be self, runners or nearest");
+        }
+    }
+
+    private static int flag(String name) {
+        switch (name) {
+            case "camera":
+                return HunterState.CAMERA;
+            case "overdrive":
+                return HunterState.OVERDRIVE;
+            case "shield":
+                return HunterState.SHIELD;
+            default:
+                throw new IllegalArgumentException("unknown flag '" + name + "'");
+        }
+    }
+
+    private static PotionEffectType effect(String key) {
+        PotionEffectType type = Registry.EFFECT.get(NamespacedKey.minecraft(key));
+        if (type == null) throw new IllegalArgumentException("unknown potion effect '" + key + "'");
+        return type;
+    }
+
+    private static SoundSpec sound(Map<?, ?> spec) {
+        String key = string(spec, "sound", "");
+        Sound sound = Registry.SOUNDS.get(NamespacedKey.minecraft(key));
+        if (sound == null) throw new IllegalArgumentException("unknown sound '" + key + "'");
+        return new SoundSpec(sound, number(spec, "volume", 1.0).floatValue(), number(spec, "pitch", 1.0).floatValue());
+    }
+
+    private static String colour(String s) {
+        return s != null ? ChatColor.translateAlternateColorCodes('&', s) : null;
+    }
+}
@@ -0,0 +1,130 @@
+package me.danyul.robot;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// one persistent ability menu per hunter. the items are built once and a
+// refresh only rewrites the slots whose state changed, so selecting an
+// ability or reopening the menu doesn't rebuild (and resend) all of it.
+// the menu is its inventory's holder, so events identify it with an
+// instanceof check and map the clicked slot straight to an ability
+final class AbilityMenu implements InventoryHolder {
+
+    static final String TITLE = ChatColor.DARK_RED + "Robot Abilities";
+
+    enum State {
+        NOT_STARTED,
+        LOCKED,
+        READY,
+        COOLDOWN,
+        USED,
+        SELECTED
+    }
+
+    private static final Ability[] ABILITIES = Ability.values();
+
+    final Inventory inventory;
+
+    private final ItemStack[] items = new ItemStack[ABILITIES.length];
+    // what each slot currently shows (null = never drawn)
+    private final State[] shown = new State[ABILITIES.length];
+    // countdown last written into LOCKED / COOLDOWN lore
+    private final long[] shownRemaining = new long[ABILITIES.length];
+
+    AbilityMenu() {
+        this.inventory = Bukkit.createInventory(this, 9, TITLE);
+    }
+
+    @Override
+    public Inventory getInventory() {
+        return inventory;
+    }
+
+    // ability shown in a raw view slot, or null outside the menu's own slots
+    Ability abilityAt(int rawSlot) {
+        if (rawSlot < 0 || rawSlot >= inventory.getSize() || rawSlot >= ABILITIES.length) return null;
+        return ABILITIES[rawSlot];
+    }
+
+    boolean isViewed() {
+        return !inventory.getViewers().isEmpty();
+    }
+
+    // redraw changed slots only; returns how many were rewritten
+    int refresh(HunterState hunter, AbilityDefinition[] defs) {
+        Match match = hunter.match;
+        long elapsed = match.getElapsedSeconds();
+        long now = System.currentTimeMillis();
+        Ability pending = hunter.pendingAbility;
+
+        int changed = 0;
+        int slots = Math.min(ABILITIES.length, inventory.getSize());
+        for (int i = 0; i < slots; i++) {
+            Ability ability = ABILITIES[i];
+            AbilityDefinition def = defs[i];
+            State state = stateOf(hunter, ability, pending, def.unlockSeconds, elapsed, now);
+            long remaining = 0L;
+            if (state == State.LOCKED) remaining = def.unlockSeconds - elapsed;
+            else if (state == State.COOLDOWN) remaining = (hunter.readyAt(ability) - now + 999L) / 1000L;
+            if (state == shown[i] && remaining == shownRemaining[i]) continue;
+
+            if (items[i] == null) items[i] = new ItemStack(ability.icon);
+            applyState(items[i], def, state, remaining);
+            inventory.setItem(i, items[i]);
+            shown[i] = state;
+            shownRemaining[i] = remaining;
+            changed++;
+        }
+        return changed;
+    }
+
+    private static State stateOf(HunterState hunter, Ability ability, Ability pending, int unlock, long elapsed, long now) {
+        if (!hunter.match.isRunning()) return State.NOT_STARTED;
+        if (elapsed < unlock) return State.LOCKED;
+        long readyAt = hunter.readyAt(ability);
+        if (readyAt == HunterState.ONCE_PER_RUN) return State.USED;
+        if (readyAt > now) return State.COOLDOWN;
+        return pending == ability ? State.SELECTED : State.READY;
+    }
+
+    static void applyState(ItemStack item, AbilityDefinition def, State state, long remaining) {
+        ItemMeta meta = item.getItemMeta();
+        if (meta == null) return;
+        meta.setDisplayName(def.ability.displayName);
+        List<String> lore = new ArrayList<>(3);
+
+        switch (state) {
+            case NOT_STARTED:
+                lore.add(ChatColor.RED + "Run has not started yet.");
+                lore.add(ChatColor.GRAY + "Use /robothunter start");
+                break;
+            case LOCKED:
+                lore.add(ChatColor.RED + "Locked: " + remaining + "s until unlock");
+                break;
+            case COOLDOWN:
+                lore.add(ChatColor.GOLD + "Cooldown: " + remaining + "s");
+                break;
+            case USED:
+                lore.add(ChatColor.DARK_GRAY + "Already used (one-time)");
+                break;
+            case READY:
+            case SELECTED:
+                lore.add(ChatColor.GREEN + "Ready!");
+                lore.add(ChatColor.GRAY + (def.oncePerRun() ? "One-time use only." : def.cooldownMillis / 1000L + "s cooldown after use."));
+                if (state == State.SELECTED) {
+                    lore.add(ChatColor.AQUA + "Selected: will fire on close");
+                }
+                break;
+        }
+
+        meta.setLore(lore);
+        item.setItemMeta(meta);
+    }
+}
@@ -0,0 +1,14 @@
+package me.danyul.robot;
+
+// one step of an ability, compiled from its config entry. stages run in
+// order on the hunter's thread; returning false stops the cast before the
+// cooldown starts, so checks belong at the front of the list
+interface AbilityStage {
+
+    boolean apply(AbilityCast c);
+
+    // true if the stage reads AbilityCast.nearest
+    default boolean needsRunner() {
+        return false;
+    }
+}
@@ -0,0 +1,168 @@
+package me.danyul.robot;
+
+import org.bukkit.ChatColor;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.entity.HumanEntity;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.EntityPickupItemEvent;
+import org.bukkit.event.entity.PlayerDeathEvent;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryDragEvent;
+import org.bukkit.event.player.PlayerDropItemEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
+import org.bukkit.event.player.PlayerSwapHandItemsEvent;
+import org.bukkit.inventory.ItemFlag;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
+import org.bukkit.inventory.meta.CompassMeta;
+import org.bukkit.inventory.meta.ItemMeta;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+// keeps each hunter's tracker compass pointed at the runner without
+// rewriting the item every second: the compass slot is cached until the
+// hunter's inventory changes, the runner's snapshot is only read once the
+// tracker has published a move, and the lodestone is only pushed once the
+// runner has moved far enough (or changed world). each hunter is only
+// updated from their own thread; the map is shared
+final class CompassTracker implements Listener {
+
+    private static final String COMPASS_NAME = ChatColor.AQUA + "Runner Tracker";
+
+    private static final class Tracked {
+        int slot = -1;          // -1 = unknown, rescan the inventory
+        UUID worldId;           // last lodestone pushed to this compass
+        double x, y, z;
+        UUID runnerId;          // runner and move count behind that lodestone
+        int moves;
+        // hunter thread only, reused every pass
+        final Location from = new Location(null, 0, 0, 0);
+        final RunnerTracker.Sample sample = new RunnerTracker.Sample();
+    }
+
+    private final Map<UUID, Tracked> tracked = new ConcurrentHashMap<>();
+    // resolved once by the caller; null = no glow
+    private final Enchantment glow;
+    // swapped by a config reload
+    private volatile double updateDistanceSq = 2.0 * 2.0;
+
+    CompassTracker(Enchantment glow) {
+        this.glow = glow;
+    }
+
+    void setUpdateDistance(double blocks) {
+        this.updateDistanceSq = blocks * blocks;
+    }
+
+    // point the hunter at their nearest runner; runs on the hunter's thread.
+    // returns that runner (or null) so the hud doesn't search again
+    RunnerTracker.Snapshot track(Player hunter, Match match) {
+        Tracked t = tracked.computeIfAbsent(hunter.getUniqueId(), k -> new Tracked());
+        RunnerTracker.Snapshot runner = match.nearestRunner(hunter.getLocation(t.from));
+        if (runner == null) return null;
+
+        // same runner and they haven't moved since the last push
+        int moves = runner.moves();
+        if (t.slot >= 0 && runner.id.equals(t.runnerId) && moves == t.moves) return runner;
+        if (!runner.copyTo(t.sample)) return runner;
+        RunnerTracker.Sample target = t.sample;
+
+        if (t.slot >= 0 && t.worldId != null && t.worldId.equals(target.world.getUID())) {
+            double dx = target.x - t.x, dy = target.y - t.y, dz = target.z - t.z;
+            if (dx * dx + dy * dy + dz * dz < updateDistanceSq) return runner;
+        }
+
+        PlayerInventory inv = hunter.getInventory();
+        ItemStack compass = t.slot >= 0 ? inv.getItem(t.slot) : null;
+        boolean fresh = false;
+        if (compass == null || compass.getType() != Material.COMPASS) {
+            t.slot = inv.first(Material.COMPASS);
+            if (t.slot < 0) {
+                inv.addItem(new ItemStack(Material.COMPASS));
+                t.slot = inv.first(Material.COMPASS);
+                if (t.slot < 0) return runner; // inventory full
+            }
+            compass = inv.getItem(t.slot);
+            fresh = true;
+        }
+
+        ItemMeta meta = compass.getItemMeta();
+        if (!(meta instanceof CompassMeta)) return runner;
+        CompassMeta cMeta = (CompassMeta) meta;
+        if (fresh && !COMPASS_NAME.equals(cMeta.getDisplayName())) {
+            cMeta.setDisplayName(COMPASS_NAME);
+            if (glow != null) {
+                cMeta.addEnchant(glow, 1, true);
+                cMeta.addItemFlags(ItemFlag.HIDE_ENCHANTS);
+            }
+        }
+        cMeta.setLodestone(new Location(target.world, target.x, target.y, target.z));
+        cMeta.setLodestoneTracked(false);
+        compass.setItemMeta(cMeta);
+
+        t.worldId = target.world.getUID();
+        t.x = target.x;
+        t.y = target.y;
+        t.z = target.z;
+        t.runnerId = runner.id;
+        t.moves = moves;
+        return runner;
+    }
+
+    void forget(UUID hunterId) {
+        tracked.remove(hunterId);
+    }
+
+    void clear() {
+        tracked.clear();
+    }
+
+    private void invalidate(HumanEntity who) {
+        Tracked t = tracked.get(who.getUniqueId());
+        if (t != null) t.slot = -1;
+    }
+
+    // ---------- inventory changes that can move or remove the compass ----------
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onClick(InventoryClickEvent e) {
+        invalidate(e.getWhoClicked());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onDrag(InventoryDragEvent e) {
+        invalidate(e.getWhoClicked());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onDrop(PlayerDropItemEvent e) {
+        invalidate(e.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPickup(EntityPickupItemEvent e) {
+        if (e.getEntity() instanceof Player) invalidate((Player) e.getEntity());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onSwapHands(PlayerSwapHandItemsEvent e) {
+        invalidate(e.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onDeath(PlayerDeathEvent e) {
+        invalidate(e.getEntity());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onRespawn(PlayerRespawnEvent e) {
+        invalidate(e.getPlayer());
+    }
+}
@@ -0,0 +1,105 @@
+package me.danyul.robot;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+// MatchBus over UDP between backends on one host or LAN: every frame goes
+// to each configured peer as one datagram, and one daemon thread reads
+// this backend's port. no connections to keep up and a backend that's down
+// costs nothing. a datagram can be lost or arrive out of order; MatchSync
+// keeps frames under one packet, takes them in any order, and repairs
+// what a lost one carried (a join, a leave, a mine) from its periodic
+// resyncs, so a loss costs a few seconds of drift until the next one.
+// datagrams from anywhere but a configured peer are dropped unread; that's
+// a cheap first filter, MatchSync's frame MAC is what actually keeps
+// others out
+final class DatagramBus implements MatchBus {
+
+    // largest datagram read; MatchSync frames stay well under this
+    private static final int MAX_PACKET = 8192;
+
+    private final DatagramSocket socket;
+    private final Set<InetSocketAddress> peers;
+    private final List<Consumer<byte[]>> receivers = new CopyOnWriteArrayList<>();
+    private final Logger logger;
+    private volatile boolean closed;
+
+    // bind is the local address and port; loopback unless the backends are
+    // on different hosts
+    DatagramBus(InetSocketAddress bind, List<InetSocketAddress> peers, Logger logger) throws SocketException {
+        this.socket = new DatagramSocket(bind);
+        this.peers = new HashSet<>(peers);
+        this.logger = logger;
+        Thread reader = new Thread(this::read, "RobotHunter-Sync");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    // "host:port", resolved now: received datagrams are matched by address
+    static InetSocketAddress parsePeer(String spec) {
+        int colon = spec.lastIndexOf(':');
+        if (colon <= 0) throw new IllegalArgumentException("peer '" + spec + "' must be host:port");
+        InetSocketAddress peer;
+        try {
+            peer = new InetSocketAddress(spec.substring(0, colon), Integer.parseInt(spec.substring(colon + 1)));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("peer '" + spec + "' has a bad port");
+        }
+        if (peer.isUnresolved()) throw new IllegalArgumentException("peer '" + spec + "' can't be resolved");
+        return peer;
+    }
+
+    @Override
+    public void publish(byte[] frame) {
+        for (InetSocketAddress peer : peers) {
+            try {
+                socket.send(new DatagramPacket(frame, frame.length, peer));
+            } catch (IOException ex) {
+                if (!closed) logger.fine("Sync send to " + peer + " failed: " + ex.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<byte[]> receiver) {
+        receivers.add(receiver);
+    }
+
+    private void read() {
+        byte[] buf = new byte[MAX_PACKET];
+        DatagramPacket packet = new DatagramPacket(buf, buf.length);
+        while (!closed) {
+            try {
+                packet.setLength(buf.length);
+                socket.receive(packet);
+                // peers send from the socket they listen on, so address and port both match
+                if (!peers.contains(packet.getSocketAddress())) continue;
+                byte[] frame = Arrays.copyOfRange(buf, packet.getOffset(), packet.getOffset() + packet.getLength());
+                for (Consumer<byte[]> receiver : receivers) {
+                    receiver.accept(frame);
+                }
+            } catch (IOException ex) {
+                if (!closed) logger.warning("Sync receive failed: " + ex.getMessage());
+            } catch (RuntimeException ex) {
+                // one bad frame mustn't kill the reader
+                logger.warning("Sync frame dropped: " + ex);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        socket.close();
+    }
+}
@@ -0,0 +1,282 @@
+package me.danyul.robot;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.Particle;
+import org.bukkit.Sound;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// sounds and particles for a match, queued from any thread during the tick
+// and sent once by the global tick. duplicates in the same block (same
+// sound and pitch, or same particle) are merged into one, each participant
+// only gets what's within the view radius of where they are, and nobody
+// gets more than the per-tick budget: gameplay feedback first, ambient
+// extras (mine shimmer) with whatever budget is left. the culling and
+// sending run on each recipient's own thread, which is the only place
+// their position can be read on Folia
+final class Feedback {
+
+    enum Audience { EVERYONE, HUNTERS }
+
+    // a merged particle burst never grows past this
+    private static final int MAX_COUNT = 64;
+
+    private static final class Effect {
+        final Audience audience;
+        final UUID worldId;
+        final double x, y, z;
+        final int bx, by, bz;
+        // one of the two is set
+        final Sound sound;
+        final Particle particle;
+        final float pitch;
+        final double spread;
+        float volume;
+        int count;
+
+        Effect(Audience audience, World world, double x, double y, double z,
+               Sound sound, float volume, float pitch, Particle particle, int count, double spread) {
+            this.audience = audience;
+            this.worldId = world.getUID();
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.bx = (int) Math.floor(x);
+            this.by = (int) Math.floor(y);
+            this.bz = (int) Math.floor(z);
+            this.sound = sound;
+            this.volume = volume;
+            this.pitch = pitch;
+            this.particle = particle;
+            this.count = count;
+            this.spread = spread;
+        }
+
+        void merge(Effect other) {
+            if (sound != null) volume = Math.max(volume, other.volume);
+            else count = Math.min(MAX_COUNT, count + other.count);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Effect)) return false;
+            Effect e = (Effect) o;
+            return bx == e.bx && by == e.by && bz == e.bz && audience == e.audience && sound == e.sound
+                    && particle == e.particle && pitch == e.pitch && spread == e.spread && worldId.equals(e.worldId);
+        }
+
+        @Override
+        public int hashCode() {
+            int h = (int) MineIndex.pack(bx, by, bz) * 31 + worldId.hashCode();
+            return h * 31 + (sound != null ? sound.hashCode() : particle.hashCode());
+        }
+    }
+
+    // one match's effects for this tick. closed once flush has taken it, so
+    // a late producer starts the next tick's batch instead of losing its effect
+    private static final class Batch {
+        final Map<Effect, Effect> effects = new LinkedHashMap<>();
+        final List<Effect> ambient = new ArrayList<>();
+        boolean closed;
+    }
+
+    // a tick's effects bucketed by 16x16 column, so with a big batch (a
+    // field of shimmering mines) a recipient only looks at the columns in
+    // their view radius instead of every effect in the match
+    private static final class Grid {
+        static final Grid EMPTY = new Grid(new Effect[0]);
+
+        final Effect[] all;
+        final Map<Long, List<Effect>> columns = new HashMap<>();
+
+        Grid(Effect[] all) {
+            this.all = all;
+            for (Effect e : all) {
+                columns.computeIfAbsent(column(e.bx >> 4, e.bz >> 4), k -> new ArrayList<>(4)).add(e);
+            }
+        }
+
+        static long column(int cx, int cz) {
+            return ((long) cx << 32) | (cz & 0xFFFFFFFFL);
+        }
+    }
+
+    private static final Effect[] NONE = new Effect[0];
+
+    private final Scheduling scheduling;
+    private final Map<Match, Batch> pending = new ConcurrentHashMap<>();
+
+    // swapped by a config reload
+    private volatile double viewRadiusSq = 48.0 * 48.0;
+    private volatile int budget = 24;
+
+    final LongAdder sent = new LongAdder();
+    final LongAdder culled = new LongAdder();
+    final LongAdder dropped = new LongAdder();
+
+    Feedback(Scheduling scheduling) {
+        this.scheduling = scheduling;
+    }
+
+    void configure(double viewRadius, int budgetPerTick) {
+        this.viewRadiusSq = viewRadius * viewRadius;
+        this.budget = budgetPerTick;
+    }
+
+    // ---------- queueing (any thread) ----------
+
+    void sound(Match match, World world, double x, double y, double z, Sound sound, float volume, float pitch) {
+        add(match, new Effect(Audience.EVERYONE, world, x, y, z, sound, volume, pitch, null, 0, 0), false);
+    }
+
+    void particle(Match match, Audience audience, World world, double x, double y, double z, Particle particle, int count, double spread) {
+        add(match, new Effect(audience, world, x, y, z, null, 0f, 0f, particle, count, spread), false);
+    }
+
+    // a faint spark on every live mine, for its owner's team only
+    void shimmer(Match match) {
+        if (match.mines.isEmpty()) return;
+        World world = null;
+        for (MineIndex.Mine mine : match.mines.snapshot()) {
+            if (world == null || !world.getUID().equals(mine.worldId)) world = Bukkit.getWorld(mine.worldId);
+            if (world == null) continue;
+            add(match, new Effect(Audience.HUNTERS, world, mine.x() + 0.5, mine.y() + 0.1, mine.z() + 0.5,
+                    null, 0f, 0f, Particle.ELECTRIC_SPARK, 2, 0.15), true);
+        }
+    }
+
+    private void add(Match match, Effect effect, boolean ambient) {
+        while (true) {
+            Batch batch = pending.computeIfAbsent(match, k -> new Batch());
+            synchronized (batch) {
+                if (batch.closed) continue;
+                if (ambient) {
+                    batch.ambient.add(effect);
+                } else {
+                    Effect existing = batch.effects.putIfAbsent(effect, effect);
+                    if (existing != null) existing.merge(effect);
+                }
+                return;
+            }
+        }
+    }
+
+    // ---------- sending (global tick) ----------
+
+    void flush() {
+        for (Match match : pending.keySet()) {
+            Batch batch = pending.remove(match);
+            if (batch == null) continue;
+            Effect[] effects, ambient;
+            synchronized (batch) {
+                batch.closed = true;
+                effects = batch.effects.values().toArray(NONE);
+                ambient = batch.ambient.toArray(NONE);
+            }
+
+            boolean forRunners = false;
+            for (Effect e : effects) {
+                if (e.audience == Audience.EVERYONE) {
+                    forRunners = true;
+                    break;
+                }
+            }
+            Grid main = effects.length == 0 ? Grid.EMPTY : new Grid(effects);
+            Grid extra = ambient.length == 0 ? Grid.EMPTY : new Grid(ambient);
+            for (UUID id : match.hunters.keySet()) {
+                deliverTo(id, true, main, extra);
+            }
+            if (!forRunners) continue;
+            for (UUID id : match.runners) {
+                deliverTo(id, false, main, Grid.EMPTY);
+            }
+        }
+    }
+
+    private void deliverTo(UUID id, boolean hunter, Grid effects, Grid ambient) {
+        Player p = Bukkit.getPlayer(id);
+        if (p == null) return;
+        scheduling.run(p, () -> deliver(p, hunter, effects, ambient));
+    }
+
+    // ---------- recipient thread ----------
+
+    private static final class Delivery {
+        final Player p;
+        final boolean hunter;
+        final Location at;
+        final UUID worldId;
+        final double r2;
+        int left;
+        // culled = looked at but out of range; effects in columns the grid
+        // never visited aren't counted at all
+        int sent, dropped, culled;
+
+        Delivery(Player p, boolean hunter, double r2, int left) {
+            this.p = p;
+            this.hunter = hunter;
+            this.at = p.getLocation();
+            this.worldId = at.getWorld().getUID();
+            this.r2 = r2;
+            this.left = left;
+        }
+    }
+
+    private void deliver(Player p, boolean hunter, Grid effects, Grid ambient) {
+        Delivery d = new Delivery(p, hunter, viewRadiusSq, budget);
+        send(d, effects);
+        send(d, ambient);
+        if (d.sent > 0) sent.add(d.sent);
+        if (d.dropped > 0) dropped.add(d.dropped);
+        if (d.culled > 0) culled.add(d.culled);
+    }
+
+    private static void send(Delivery d, Grid grid) {
+        Effect[] all = grid.all;
+        if (all.length == 0) return;
+        int reach = (int) Math.ceil(Math.sqrt(d.r2)) >> 4;
+        int span = 2 * reach + 2;
+        // small batches are cheaper to scan than to look up column by column
+        if (all.length <= span * span) {
+            for (Effect e : all) offer(d, e);
+            return;
+        }
+        int cx = (int) Math.floor(d.at.getX()) >> 4, cz = (int) Math.floor(d.at.getZ()) >> 4;
+        for (int x = cx - reach - 1; x <= cx + reach + 1; x++) {
+            for (int z = cz - reach - 1; z <= cz + reach + 1; z++) {
+                List<Effect> column = grid.columns.get(Grid.column(x, z));
+                if (column == null) continue;
+                for (int i = 0, n = column.size(); i < n; i++) offer(d, column.get(i));
+            }
+        }
+    }
+
+    private static void offer(Delivery d, Effect e) {
+        if (!d.hunter && e.audience == Audience.HUNTERS) return;
+        double dx = e.x - d.at.getX(), dy = e.y - d.at.getY(), dz = e.z - d.at.getZ();
+        if (!e.worldId.equals(d.worldId) || dx * dx + dy * dy + dz * dz > d.r2) {
+            d.culled++;
+            return;
+        }
+        if (d.left <= 0) {
+            d.dropped++;
+            return;
+        }
+        d.left--;
+        d.sent++;
+        if (e.sound != null) {
+            d.p.playSound(new Location(d.at.getWorld(), e.x, e.y, e.z), e.sound, e.volume, e.pitch);
+        } else {
+            d.p.spawnParticle(e.particle, e.x, e.y, e.z, e.count, e.spread, e.spread, e.spread, 0.0);
+        }
+    }
+
+    void clear() {
+        pending.clear();
+    }
+}
@@ -0,0 +1,184 @@
+package me.danyul.robot;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.Location;
+import org.bukkit.boss.BarColor;
+import org.bukkit.boss.BarStyle;
+import org.bukkit.boss.BossBar;
+import org.bukkit.entity.Player;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+// boss bar for each hunter: next unlock with a countdown, how many
+// abilities are ready, and how far the nearest runner is. the shared global
+// task computes one Frame per match (what's unlocked, what's next); each
+// hunter's own task then combines it with their cooldowns and position and
+// only touches the bar when something it shows has changed
+final class HunterHud {
+
+    private static final Ability[] ABILITIES = Ability.values();
+
+    // per match, replaced once a second by the global task
+    static final class Frame {
+        final boolean running;
+        final long elapsed;
+        // abilities past their unlock time, one bit per ordinal
+        final int unlockedMask;
+        // next ability to unlock, or null once everything is unlocked
+        final Ability next;
+        final long nextIn;
+        // 0..1 through the wait for `next`
+        final double progress;
+
+        Frame(boolean running, long elapsed, int unlockedMask, Ability next, long nextIn, double progress) {
+            this.running = running;
+            this.elapsed = elapsed;
+            this.unlockedMask = unlockedMask;
+            this.next = next;
+            this.nextIn = nextIn;
+            this.progress = progress;
+        }
+    }
+
+    // one hunter's bar and what it last showed. hunter thread only
+    private static final class View {
+        final BossBar bar;
+        final Location from = new Location(null, 0, 0, 0);
+        boolean shown;
+        boolean running;
+        Ability next;
+        long nextIn;
+        int readyMask;
+        int distance;     // whole blocks, -1 = no runner in this world
+        double progress = -1;
+
+        View(BossBar bar) {
+            this.bar = bar;
+        }
+    }
+
+    private static final Frame IDLE = new Frame(false, 0, 0, null, 0, 1.0);
+
+    private final Map<UUID, View> views = new ConcurrentHashMap<>();
+
+    // ---------- global task ----------
+
+    // once per match per frame, not once per hunter
+    static void computeFrames(Collection<Match> matches, int[] unlockSeconds) {
+        for (Match match : matches) {
+            match.hud = frame(match, unlockSeconds);
+        }
+    }
+
+    static Frame frame(Match match, int[] unlockSeconds) {
+        if (!match.isRunning()) return IDLE;
+        long elapsed = match.getElapsedSeconds();
+        int unlocked = 0;
+        Ability next = null;
+        int nextUnlock = Integer.MAX_VALUE;
+        int previousUnlock = 0;
+        for (Ability ability : ABILITIES) {
+            int unlock = unlockSeconds[ability.ordinal()];
+            if (unlock <= elapsed) {
+                unlocked |= 1 << ability.ordinal();
+                previousUnlock = Math.max(previousUnlock, unlock);
+            } else if (unlock < nextUnlock) {
+                nextUnlock = unlock;
+                next = ability;
+            }
+        }
+        if (next == null) return new Frame(true, elapsed, unlocked, null, 0, 1.0);
+        double progress = (double) (elapsed - previousUnlock) / (nextUnlock - previousUnlock);
+        return new Frame(true, elapsed, unlocked, next, nextUnlock - elapsed, Math.max(0.0, Math.min(1.0, progress)));
+    }
+
+    // ---------- hunter task ----------
+
+    // on the hunter's thread; nearest is the runner their compass follows
+    void update(Player hunter, HunterState state, RunnerTracker.Snapshot nearest) {
+        View view = views.computeIfAbsent(state.id, k -> {
+            BossBar bar = Bukkit.createBossBar("", BarColor.RED, BarStyle.SEGMENTED_10);
+            bar.addPlayer(hunter);
+            return new View(bar);
+        });
+        Frame frame = state.match.hud;
+        if (frame == null) frame = IDLE;
+
+        long now = System.currentTimeMillis();
+        int ready = 0;
+        if (frame.running) {
+            int unlocked = frame.unlockedMask;
+            while (unlocked != 0) {
+                int i = Integer.numberOfTrailingZeros(unlocked);
+                unlocked &= unlocked - 1;
+                if (!state.isCoolingDown(ABILITIES[i], now)) ready |= 1 << i;
+            }
+        }
+        int distance = -1;
+        if (nearest != null) {
+            hunter.getLocation(view.from);
+            double d = nearest.distanceSquared(view.from.getWorld(), view.from.getX(), view.from.getY(), view.from.getZ());
+            if (d != Double.MAX_VALUE) distance = (int) Math.sqrt(d);
+        }
+
+        if (view.shown && view.running == frame.running && view.next == frame.next && view.nextIn == frame.nextIn
+                && view.readyMask == ready && view.distance == distance) {
+            // title unchanged; the bar can still creep
+            if (view.progress != frame.progress) {
+                view.bar.setProgress(frame.progress);
+                view.progress = frame.progress;
+            }
+            return;
+        }
+
+        if (view.running != frame.running || !view.shown) {
+            view.bar.setColor(frame.running ? BarColor.RED : BarColor.WHITE);
+        }
+        view.bar.setTitle(title(frame, ready, distance));
+        if (view.progress != frame.progress) view.bar.setProgress(frame.progress);
+        view.shown = true;
+        view.running = frame.running;
+        view.next = frame.next;
+        view.nextIn = frame.nextIn;
+        view.readyMask = ready;
+        view.distance = distance;
+        view.progress = frame.progress;
+    }
+
+    private static String title(Frame frame, int ready, int distance) {
+        if (!frame.running) return ChatColor.GRAY + "Waiting for /robothunter start";
+        StringBuilder sb = new StringBuilder(64);
+        if (frame.next != null) {
+            sb.append(ChatColor.GRAY).append("Next: ").append(frame.next.displayName)
+                    .append(ChatColor.GRAY).append(" in ").append(frame.nextIn / 60).append(':');
+            long s = frame.nextIn % 60;
+            if (s < 10) sb.append('0');
+            sb.append(s);
+        } else {
+            sb.append(ChatColor.GRAY).append("All abilities unlocked");
+        }
+        sb.append(ChatColor.DARK_GRAY).append("  |  ").append(ChatColor.GREEN).append("Ready: ").append(Integer.bitCount(ready));
+        sb.append(ChatColor.DARK_GRAY).append("  |  ").append(ChatColor.AQUA).append("Runner: ");
+        if (distance < 0) sb.append('?');
+        else sb.append(distance).append('m');
+        return sb.toString();
+    }
+
+    // ---------- cleanup ----------
+
+    void remove(UUID hunterId) {
+        View view = views.remove(hunterId);
+        if (view != null) view.bar.removeAll();
+    }
+
+    void clear() {
+        for (View view : views.values()) {
+            view.bar.removeAll();
+        }
+        views.clear();
+    }
+}
@@ -0,0 +1,99 @@
+package me.danyul.robot;
+
+import org.bukkit.Location;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// everything tracked about one hunter, so an event handler does a single
+// map lookup instead of one per collection. fields are written from the
+// thread that owns the hunter, except resetRun() which runs on whichever
+// thread starts or stops the run; plain fields are volatile so other
+// threads can read them, and the flags and cooldowns are atomics so a
+// reset can't lose or undo the hunter's own update
+final class HunterState {
+
+    // cooldown that never ends within a run (cooldown_seconds: -1)
+    static final long ONCE_PER_RUN = Long.MAX_VALUE;
+
+    // why a cast can't go ahead, in the order the hunter hears about it
+    enum CastCheck { READY, NOT_RUNNING, LOCKED, USED, COOLING_DOWN }
+
+    // flag bits
+    static final int CAMERA = 1;
+    static final int OVERDRIVE = 1 << 1;
+    static final int SHIELD = 1 << 2;
+
+    final UUID id;
+    final Match match;
+
+    // respawn point, set when they became a hunter
+    volatile Location spawn;
+    // last melee hit (millis)
+    volatile long lastAttackTime;
+    // ability selected while the menu is open (fires on close)
+    volatile Ability pendingAbility;
+    // built on first /robothunter abilities
+    volatile AbilityMenu menu;
+    // scratch for casting, hunter thread only
+    final AbilityCast cast = new AbilityCast();
+
+    private final AtomicInteger flags = new AtomicInteger();
+    // when each ability (by ordinal) can be cast again, epoch millis; 0 = ready
+    private final AtomicLongArray readyAt = new AtomicLongArray(Ability.values().length);
+
+    HunterState(UUID id, Match match) {
+        this.id = id;
+        this.match = match;
+    }
+
+    boolean has(int flag) {
+        return (flags.get() & flag) != 0;
+    }
+
+    void set(int flag) {
+        flags.getAndUpdate(f -> f | flag);
+    }
+
+    void clear(int flag) {
+        flags.getAndUpdate(f -> f & ~flag);
+    }
+
+    // epoch millis the ability is ready again (0 = ready, ONCE_PER_RUN = never)
+    long readyAt(Ability ability) {
+        return readyAt.get(ability.ordinal());
+    }
+
+    CastCheck checkCast(AbilityDefinition def, long now) {
+        if (!match.isRunning()) return CastCheck.NOT_RUNNING;
+        if (match.getElapsedSeconds() < def.unlockSeconds) return CastCheck.LOCKED;
+        long ready = readyAt(def.ability);
+        if (ready == ONCE_PER_RUN) return CastCheck.USED;
+        if (ready > now) return CastCheck.COOLING_DOWN;
+        return CastCheck.READY;
+    }
+
+    boolean isCoolingDown(Ability ability, long now) {
+        return readyAt.get(ability.ordinal()) > now;
+    }
+
+    void startCooldown(Ability ability, long now, long cooldownMillis) {
+        long until = cooldownMillis == ONCE_PER_RUN ? ONCE_PER_RUN : now + cooldownMillis;
+        readyAt.set(ability.ordinal(), until);
+    }
+
+    // for restoring from disk
+    void setReadyAt(Ability ability, long until) {
+        readyAt.set(ability.ordinal(), until);
+    }
+
+    // clears per-run ability state (start/stop)
+    void resetRun() {
+        for (int i = 0; i < readyAt.length(); i++) {
+            readyAt.set(i, 0L);
+        }
+        pendingAbility = null;
+        flags.set(0);
+    }
+}
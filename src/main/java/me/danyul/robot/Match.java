@@ -0,0 +1,131 @@
+package me.danyul.robot;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+// one hunt: its runners, hunters, mines and ability state
+final class Match {
+
+    // timer-mode mines are polled every this many runner samples (ticks)
+    static final long MINE_POLL_TICKS = 5L;
+    // ids end up in file names (recordings), so nothing path-like
+    private static final Pattern VALID_ID = Pattern.compile("[a-z0-9_-]{1,32}");
+
+    // last point a runner was checked against mines (move mode sweeps from
+    // here). only touched from the runner's own thread
+    static final class MineSweep {
+        UUID worldId;
+        double x, y, z;
+        // reused by the mine check so polling doesn't allocate
+        final List<MineIndex.Mine> triggered = new ArrayList<>();
+    }
+
+    final String id;
+
+    final Set<UUID> runners = ConcurrentHashMap.newKeySet();
+    // each online runner's per-tick sample, written by the runner's own task
+    // so other threads never read a live runner entity
+    final Map<UUID, RunnerTracker.Snapshot> runnerSnapshots = new ConcurrentHashMap<>();
+    // this match's entries from the plugin's hunter store
+    final Map<UUID, HunterState> hunters = new ConcurrentHashMap<>();
+
+    // when the run actually starts (set by /robothunter start)
+    volatile long gameStartTime = -1L;
+    // lamport stamp of the last start / stop on any backend, and the backend
+    // that made it; with sync on, the highest (stamp, node) wins. only
+    // touched on the global thread (commands hand start / stop / clear to
+    // it), so the pair always changes together
+    volatile long clockStamp;
+    volatile long clockNode;
+    // recorder stream for the current run, -1 when not recording
+    volatile int recording = -1;
+    // what every hunter's bar shows this second, null until the hud task runs
+    volatile HunterHud.Frame hud;
+
+    final MineIndex mines = new MineIndex();
+    final Map<UUID, MineSweep> mineSweeps = new ConcurrentHashMap<>();
+
+    Match(String id) {
+        this.id = id;
+    }
+
+    static boolean isValidId(String id) {
+        return VALID_ID.matcher(id).matches();
+    }
+
+    boolean isRunning() {
+        return gameStartTime > 0;
+    }
+
+    boolean isEmpty() {
+        return runners.isEmpty() && hunters.isEmpty();
+    }
+
+    long getElapsedSeconds() {
+        if (gameStartTime <= 0) return 0;
+        return (System.currentTimeMillis() - gameStartTime) / 1000L;
+    }
+
+    // clears per-run ability state (start/stop)
+    void resetRun() {
+        for (HunterState hunter : hunters.values()) {
+            hunter.resetRun();
+        }
+    }
+
+    // walks a runner's feet from where their last check left off to `to` and
+    // takes out the mines on the way. a jump longer than maxSweep, or into
+    // another world, is a teleport and only checks where they landed. the
+    // list is the runner's reusable one: fire and clear it before the next
+    // call. on the runner's thread
+    List<MineIndex.Mine> sweepMines(UUID runnerId, Location to, double maxSweep, long now) {
+        mines.purgeExpired(now);
+
+        MineSweep last = mineSweeps.computeIfAbsent(runnerId, k -> new MineSweep());
+        World world = to.getWorld();
+        double ax = last.x, ay = last.y, az = last.z;
+        boolean sweep = world.getUID().equals(last.worldId);
+        if (sweep) {
+            double dx = to.getX() - ax, dy = to.getY() - ay, dz = to.getZ() - az;
+            sweep = dx * dx + dy * dy + dz * dz <= maxSweep * maxSweep;
+        }
+        if (!sweep) {
+            ax = to.getX();
+            ay = to.getY();
+            az = to.getZ();
+        }
+        last.worldId = world.getUID();
+        last.x = to.getX();
+        last.y = to.getY();
+        last.z = to.getZ();
+
+        if (!mines.isEmpty()) mines.pollAlong(world, ax, ay, az, to.getX(), to.getY(), to.getZ(), last.triggered);
+        return last.triggered;
+    }
+
+    void removeRunner(UUID id) {
+        runners.remove(id);
+        runnerSnapshots.remove(id);
+        mineSweeps.remove(id);
+    }
+
+    // closest sampled runner in the same world, or null
+    RunnerTracker.Snapshot nearestRunner(Location from) {
+        RunnerTracker.Snapshot best = null;
+        double bestDist = Double.MAX_VALUE;
+        World world = from.getWorld();
+        double x = from.getX(), y = from.getY(), z = from.getZ();
+        for (RunnerTracker.Snapshot runner : runnerSnapshots.values()) {
+            double d = runner.distanceSquared(world, x, y, z);
+            if (d < bestDist) {
+                bestDist = d;
+                best = runner;
+            }
+        }
+        return best;
+    }
+}
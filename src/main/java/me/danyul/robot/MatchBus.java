@@ -0,0 +1,63 @@
+package me.danyul.robot;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+// how MatchSync frames get between backends. a transport only moves opaque
+// frames; encoding, batching and who applies what live in MatchSync.
+// publish is called off the main thread and may block briefly, receivers
+// are called on whatever thread the transport reads on
+interface MatchBus {
+
+    // to every other backend; this one never gets its own frames back
+    void publish(byte[] frame);
+
+    void subscribe(Consumer<byte[]> receiver);
+
+    void close();
+
+    // in-process transport: every bus joined to the same hub hears every
+    // other one, synchronously on the publisher's thread. for tests and for
+    // running several MatchSyncs in one JVM
+    final class Loopback implements MatchBus {
+
+        static final class Hub {
+            private final List<Loopback> members = new CopyOnWriteArrayList<>();
+
+            Loopback join() {
+                Loopback bus = new Loopback(this);
+                members.add(bus);
+                return bus;
+            }
+        }
+
+        private final Hub hub;
+        private final List<Consumer<byte[]>> receivers = new CopyOnWriteArrayList<>();
+
+        private Loopback(Hub hub) {
+            this.hub = hub;
+        }
+
+        @Override
+        public void publish(byte[] frame) {
+            for (Loopback other : hub.members) {
+                if (other == this) continue;
+                for (Consumer<byte[]> receiver : other.receivers) {
+                    receiver.accept(frame.clone());
+                }
+            }
+        }
+
+        @Override
+        public void subscribe(Consumer<byte[]> receiver) {
+            receivers.add(receiver);
+        }
+
+        @Override
+        public void close() {
+            hub.members.remove(this);
+            receivers.clear();
+        }
+    }
+}
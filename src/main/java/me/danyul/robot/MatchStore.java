@@ -0,0 +1,181 @@
+package me.danyul.robot;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+// saves matches (start time, runners, hunters with spawn + cooldowns,
+// live mines) to one compact binary file so a run survives a restart.
+// changes only mark the store dirty; an async task writes a full snapshot
+// at most once per interval, to a temp file that's then moved into place
+final class MatchStore {
+
+    private static final int MAGIC = 0x52484D53; // "RHMS"
+    // bump when the layout changes, and read the old one in load
+    private static final int VERSION = 1;
+
+    private final Path file;
+    private final Logger logger;
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    MatchStore(Path file, Logger logger) {
+        this.file = file;
+        this.logger = logger;
+    }
+
+    void markDirty() {
+        dirty.set(true);
+    }
+
+    // called from the async save task (and once on disable)
+    void saveIfDirty(Collection<Match> matches) {
+        if (!dirty.getAndSet(false)) return;
+        try {
+            save(matches);
+        } catch (IOException ex) {
+            dirty.set(true); // try again next round
+            logger.warning("Could not save matches to " + file + ": " + ex.getMessage());
+        }
+    }
+
+    // one writer at a time; the async task and onDisable can overlap
+    synchronized void save(Collection<Match> matches) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(matches.size());
+            for (Match match : matches) {
+                writeMatch(out, match);
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeMatch(DataOutputStream out, Match match) throws IOException {
+        out.writeUTF(match.id);
+        out.writeLong(match.gameStartTime);
+
+        // copy first: these are live concurrent collections
+        UUID[] runners = match.runners.toArray(new UUID[0]);
+        out.writeInt(runners.length);
+        for (UUID id : runners) {
+            writeUuid(out, id);
+        }
+
+        HunterState[] hunters = match.hunters.values().toArray(new HunterState[0]);
+        out.writeInt(hunters.length);
+        for (HunterState hunter : hunters) {
+            writeUuid(out, hunter.id);
+            Ability[] abilities = Ability.values();
+            out.writeByte(abilities.length);
+            for (Ability ability : abilities) {
+                out.writeLong(hunter.readyAt(ability));
+            }
+            Location spawn = hunter.spawn;
+            out.writeBoolean(spawn != null && spawn.getWorld() != null);
+            if (spawn != null && spawn.getWorld() != null) {
+                writeUuid(out, spawn.getWorld().getUID());
+                out.writeDouble(spawn.getX());
+                out.writeDouble(spawn.getY());
+                out.writeDouble(spawn.getZ());
+                out.writeFloat(spawn.getYaw());
+                out.writeFloat(spawn.getPitch());
+            }
+        }
+
+        List<MineIndex.Mine> mines = match.mines.snapshot();
+        out.writeInt(mines.size());
+        for (MineIndex.Mine mine : mines) {
+            writeUuid(out, mine.worldId);
+            out.writeLong(mine.pos);
+            writeUuid(out, mine.ownerId);
+            out.writeLong(mine.expiresAt);
+        }
+    }
+
+    // rebuilds saved matches through the factory; returns how many were loaded.
+    // mines in unloaded worlds or already past their expiry are dropped
+    int load(Function<String, Match> matchFactory, long now) throws IOException {
+        DataInputStream in;
+        try {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+        } catch (NoSuchFileException ex) {
+            return 0;
+        }
+
+        try (in) {
+            if (in.readInt() != MAGIC) throw new IOException("not a match save file");
+            int version = in.readInt();
+            if (version != VERSION) throw new IOException("unsupported save version " + version);
+
+            int count = in.readInt();
+            Map<UUID, World> worlds = new HashMap<>();
+            for (int m = 0; m < count; m++) {
+                Match match = matchFactory.apply(in.readUTF());
+                match.gameStartTime = in.readLong();
+
+                int runners = in.readInt();
+                for (int i = 0; i < runners; i++) {
+                    match.runners.add(readUuid(in));
+                }
+
+                int hunters = in.readInt();
+                for (int i = 0; i < hunters; i++) {
+                    HunterState hunter = new HunterState(readUuid(in), match);
+                    readCooldowns(in, hunter);
+                    if (in.readBoolean()) {
+                        World world = world(worlds, readUuid(in));
+                        double x = in.readDouble(), y = in.readDouble(), z = in.readDouble();
+                        float yaw = in.readFloat(), pitch = in.readFloat();
+                        if (world != null) hunter.spawn = new Location(world, x, y, z, yaw, pitch);
+                    }
+                    match.hunters.put(hunter.id, hunter);
+                }
+
+                int mineCount = in.readInt();
+                for (int i = 0; i < mineCount; i++) {
+                    World world = world(worlds, readUuid(in));
+                    long pos = in.readLong();
+                    UUID owner = readUuid(in);
+                    long expiresAt = in.readLong();
+                    if (world != null && expiresAt > now) match.mines.restore(world.getUID(), pos, owner, expiresAt);
+                }
+            }
+            return count;
+        }
+    }
+
+    // one ready-at time per ability, in Ability order
+    private static void readCooldowns(DataInputStream in, HunterState hunter) throws IOException {
+        Ability[] abilities = Ability.values();
+        int count = in.readUnsignedByte();
+        for (int i = 0; i < count; i++) {
+            long readyAt = in.readLong();
+            if (i < abilities.length) hunter.setReadyAt(abilities[i], readyAt);
+        }
+    }
+
+    private static World world(Map<UUID, World> cache, UUID id) {
+        return cache.computeIfAbsent(id, Bukkit::getWorld);
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID id) throws IOException {
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+    }
+
+    private static UUID readUuid(DataInputStream in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+}
@@ -0,0 +1,891 @@
+package me.danyul.robot;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+// keeps a hunt consistent across backends, so a runner who changes server
+// is still tracked. what's shared: runner positions, the run clock, who's
+// hunting / running, and mine placements and removals. local changes are
+// queued from whatever thread makes them and sent as one batch every few
+// ticks; encoding and sending run async. frames from other backends are
+// decoded on the transport's thread, and the global tick applies what they
+// carried, so the main thread never waits on the network.
+//
+// any frame can be lost, so every few seconds each backend also sends a
+// resync: the clock, its whole roster and every live mine it placed, then
+// a RESYNC marker. a receiver remembers which backend told it about each
+// player and mine, and drops the ones that backend has stopped listing for
+// RESYNC_GRACE rounds, so a lost leave or mine removal is repaired too
+//
+// frames are compact binary: a header, then records grouped under the match
+// they belong to. runners get a small handle per sender, and positions are
+// varint deltas (1/32 block) from that runner's last keyframe. a delta
+// names the keyframe it's relative to, so a lost frame only costs deltas
+// until the next keyframe, never a wrong position.
+//
+// every frame ends in an HMAC-SHA256 tag (first 16 bytes) keyed by the
+// shared sync.secret, and carries a per-sender sequence number. frames
+// leave a backend in sequence order but UDP may reorder them, so each
+// sender gets a 64-frame replay window: a frame with a bad tag, one already
+// seen, or one older than the window is dropped whole before anything in
+// it is read. a runner position from a frame older than the last one
+// applied for that runner is skipped, so a late frame never moves them back
+final class MatchSync {
+
+    // how the plugin applies other backends' changes; global thread only
+    interface Host {
+        // the match with this id, created if needed
+        Match match(String id);
+
+        // startedAt is in this server's clock, -1 = stopped
+        void remoteClock(Match match, long startedAt);
+
+        void remoteJoin(Match match, UUID id, boolean hunter);
+
+        void remoteLeave(Match match, UUID id);
+    }
+
+    private static final int MAGIC = 0x5248; // "RH"
+    private static final int VERSION = 4;
+    private static final int MAC_BYTES = 16;
+    // frames this far behind a sender's newest are still accepted once
+    private static final int REPLAY_WINDOW = 64;
+    // one frame and its tag fit in one ethernet packet
+    private static final int MAX_FRAME = 1200 - MAC_BYTES;
+    // positions travel in 1/32 blocks
+    private static final double UNIT = 32.0;
+    // a fresh keyframe after this many deltas, or for a delta this big
+    private static final int DELTAS_PER_KEY = 40;
+    private static final long MAX_DELTA = 1L << 16;
+    // clock, roster, mines and runner positions are re-sent this often (in
+    // flushes), for backends that started late or lost a frame, and so a
+    // runner standing still doesn't time out
+    private static final int RESYNC_FLUSHES = 50;
+    // a player or mine another backend stopped listing goes after it's
+    // been missing from this many of its resyncs in a row; one isn't
+    // enough, as a resync can cross a join or placement on the wire
+    private static final int RESYNC_GRACE = 2;
+    // remote runners nobody has heard about for this long are dropped
+    private static final long REMOTE_TIMEOUT_MILLIS = 20_000L;
+
+    // record types
+    private static final int MATCH = 1, CLOCK = 2, JOIN = 3, LEAVE = 4, RUNNER_KEY = 5, RUNNER_DELTA = 6,
+            MINE_ADD = 7, MINE_REMOVE = 8, RESYNC = 9;
+
+    // one change, either way over the bus. RUNNER_KEY doubles as "runner
+    // is here" once a delta has been resolved against its keyframe
+    private static final class Change {
+        final int type;
+        final String matchId; // null for RESYNC, which covers every match
+        long from;          // received: the sending backend
+        UUID id;            // player, or the mine's owner
+        boolean hunter;
+        long stamp;         // clock: lamport stamp of the last start / stop
+        long node;          // clock: the backend that made that stamp
+        long startedAt;     // clock: run start on this backend's clock, -1 = stopped
+        String world;
+        double x, y, z;     // runner
+        long pos;           // mine cell (MineIndex packing)
+        long ttl;           // mine: millis left, 0 = never expires
+        long round;         // resync: the sender's resync count
+
+        Change(int type, String matchId) {
+            this.type = type;
+            this.matchId = matchId;
+        }
+    }
+
+    // what's been decoded from one sending backend
+    private static final class Peer {
+        final Map<Integer, Key> keys = new HashMap<>();
+        // highest frame seq accepted, and which of the REPLAY_WINDOW frames
+        // up to it have arrived (bit i = highest - i)
+        long highest = -1;
+        long seen;
+
+        boolean accept(long seq) {
+            if (seq > highest) {
+                long shift = seq - highest;
+                seen = shift >= REPLAY_WINDOW ? 1L : (seen << shift) | 1L;
+                highest = seq;
+                return true;
+            }
+            long age = highest - seq;
+            if (age >= REPLAY_WINDOW) return false; // too old to tell from a replay
+            long bit = 1L << age;
+            if ((seen & bit) != 0) return false;
+            seen |= bit;
+            return true;
+        }
+    }
+
+    // the last keyframe for one runner, on either side
+    private static final class Key {
+        final int handle;
+        final UUID id;
+        int seq;
+        String world;
+        long x, y, z;
+        int deltas;
+        // receiving: frame seq of the newest position decoded for the runner
+        long frame;
+
+        Key(int handle, UUID id) {
+            this.handle = handle;
+            this.id = id;
+        }
+    }
+
+    // a player or mine another backend has, and the round of its resyncs
+    // that last listed it (or the one in progress when a change named it)
+    private static final class Claim {
+        final Match match;
+        long peer;
+        long round;
+
+        Claim(Match match) {
+            this.match = match;
+        }
+    }
+
+    // a runner on another backend and when we last heard of them
+    private static final class Remote {
+        final Match match;
+        final RunnerTracker.Snapshot snapshot;
+        long seen;
+
+        Remote(Match match, RunnerTracker.Snapshot snapshot) {
+            this.match = match;
+            this.snapshot = snapshot;
+        }
+    }
+
+    private final MatchBus bus;
+    private final Scheduling scheduling;
+    private final Host host;
+    private final int flushTicks;
+    private final long node = ThreadLocalRandom.current().nextLong();
+
+    // outgoing: events in order, runner positions latest-only
+    private final Queue<Change> outbox = new ConcurrentLinkedQueue<>();
+    private final Map<UUID, Change> positions = new ConcurrentHashMap<>();
+    // incoming, decoded and waiting for the global tick
+    private final Queue<Change> inbox = new ConcurrentLinkedQueue<>();
+
+    // encoder state, under its own lock (sends run async and may overlap).
+    // frames are published under it too, so they leave in sequence order
+    private final Map<UUID, Key> sent = new HashMap<>();
+    private final Mac sendMac;
+    private int nextHandle;
+    private long frameSeq;
+    // decoder state per sending node, under its own lock
+    private final Map<Long, Peer> received = new HashMap<>();
+    private final Mac receiveMac;
+
+    // global thread only
+    private final Map<UUID, Remote> remotes = new HashMap<>();
+    private long flushes;
+    // who has each player and mine we heard about, and the last resync
+    // round heard from each backend. anything not in these is this backend's
+    private final Map<UUID, Claim> memberClaims = new HashMap<>();
+    private final Map<MineIndex.Mine, Claim> mineClaims = new HashMap<>();
+    private final Map<Long, Long> rounds = new HashMap<>();
+
+    final LongAdder framesSent = new LongAdder();
+    final LongAdder bytesSent = new LongAdder();
+    final LongAdder framesReceived = new LongAdder();
+    final LongAdder framesDropped = new LongAdder();
+
+    // secret is shared by every backend in the group
+    MatchSync(MatchBus bus, byte[] secret, Scheduling scheduling, Host host, int flushTicks) {
+        this.sendMac = mac(secret);
+        this.receiveMac = mac(secret);
+        this.bus = bus;
+        this.scheduling = scheduling;
+        this.host = host;
+        this.flushTicks = Math.max(1, flushTicks);
+        bus.subscribe(this::receive);
+    }
+
+    // ------------------------------------------------------------------ //
+    // LOCAL CHANGES (any thread)
+    // ------------------------------------------------------------------ //
+
+    // after the match was started or stopped here; global thread. the stamp
+    // is one past the newest this backend has seen for the match, so starts
+    // and stops order the same everywhere without wall clocks agreeing
+    void clock(Match match) {
+        match.clockStamp = match.clockStamp + 1;
+        match.clockNode = node;
+        queueClock(match);
+    }
+
+    private void queueClock(Match match) {
+        Change c = new Change(CLOCK, match.id);
+        c.stamp = match.clockStamp;
+        c.node = match.clockNode;
+        c.startedAt = match.gameStartTime > 0 ? match.gameStartTime : -1L;
+        outbox.add(c);
+    }
+
+    void joined(Match match, UUID id, boolean hunter) {
+        Change c = new Change(JOIN, match.id);
+        c.id = id;
+        c.hunter = hunter;
+        outbox.add(c);
+    }
+
+    void left(Match match, UUID id) {
+        Change c = new Change(LEAVE, match.id);
+        c.id = id;
+        outbox.add(c);
+    }
+
+    // RunnerTracker.MoveListener, on the runner's thread
+    void runnerMoved(Match match, RunnerTracker.Snapshot runner, Location at) {
+        positions.put(runner.id, position(match, runner.id, at.getWorld(), at.getX(), at.getY(), at.getZ()));
+    }
+
+    private static Change position(Match match, UUID id, World world, double x, double y, double z) {
+        Change c = new Change(RUNNER_KEY, match.id);
+        c.id = id;
+        c.world = world.getName();
+        c.x = x;
+        c.y = y;
+        c.z = z;
+        return c;
+    }
+
+    // placements and removals made on this backend
+    MineIndex.Listener mineListener(Match match) {
+        return new MineIndex.Listener() {
+            @Override
+            public void placed(MineIndex.Mine mine) {
+                mineAdded(match, mine, System.currentTimeMillis());
+            }
+
+            @Override
+            public void removed(MineIndex.Mine mine) {
+                World world = Bukkit.getWorld(mine.worldId);
+                if (world == null) return;
+                Change c = new Change(MINE_REMOVE, match.id);
+                c.world = world.getName();
+                c.pos = mine.pos;
+                outbox.add(c);
+            }
+        };
+    }
+
+    private void mineAdded(Match match, MineIndex.Mine mine, long now) {
+        World world = Bukkit.getWorld(mine.worldId);
+        if (world == null) return;
+        Change c = new Change(MINE_ADD, match.id);
+        c.world = world.getName();
+        c.pos = mine.pos;
+        c.id = mine.ownerId;
+        c.ttl = mine.expiresAt == Long.MAX_VALUE ? 0L : Math.max(1L, mine.expiresAt - now);
+        outbox.add(c);
+    }
+
+    // ------------------------------------------------------------------ //
+    // GLOBAL TICK
+    // ------------------------------------------------------------------ //
+
+    // applies what other backends sent, then every flushTicks hands this
+    // backend's batch to an async send
+    void tick(long tick, Collection<Match> matches) {
+        long now = System.currentTimeMillis();
+        Change in;
+        while ((in = inbox.poll()) != null) {
+            apply(in, now);
+        }
+        remotes.values().removeIf(r -> {
+            if (now - r.seen < REMOTE_TIMEOUT_MILLIS) return false;
+            r.match.runnerSnapshots.remove(r.snapshot.id, r.snapshot);
+            return true;
+        });
+
+        if (tick % flushTicks != 0) return;
+        if (++flushes % RESYNC_FLUSHES == 0) resync(matches, flushes / RESYNC_FLUSHES);
+        List<Change> batch = new ArrayList<>();
+        Change out;
+        while ((out = outbox.poll()) != null) {
+            batch.add(out);
+        }
+        for (UUID id : positions.keySet()) {
+            Change c = positions.remove(id);
+            if (c != null) batch.add(c);
+        }
+        if (batch.isEmpty()) return;
+        scheduling.async(() -> send(batch));
+    }
+
+    // the clock, everyone and every live mine this backend has, and where
+    // its runners are, then the marker that says that was all of it
+    private void resync(Collection<Match> matches, long round) {
+        RunnerTracker.Sample s = new RunnerTracker.Sample();
+        long now = System.currentTimeMillis();
+        for (Match match : matches) {
+            if (match.clockStamp > 0) queueClock(match);
+            for (UUID id : match.runners) {
+                listMember(match, id, false);
+            }
+            for (UUID id : match.hunters.keySet()) {
+                listMember(match, id, true);
+            }
+            for (MineIndex.Mine mine : match.mines.snapshot()) {
+                if (mine.expiresAt > now && !mineClaims.containsKey(mine)) mineAdded(match, mine, now);
+            }
+            for (RunnerTracker.Snapshot runner : match.runnerSnapshots.values()) {
+                if (runner.isRemote() || !runner.copyTo(s)) continue;
+                positions.putIfAbsent(runner.id, position(match, runner.id, s.world, s.x, s.y, s.z));
+            }
+        }
+        Change end = new Change(RESYNC, null);
+        end.round = round;
+        outbox.add(end);
+    }
+
+    // a player online here is this backend's, whoever added them first
+    private void listMember(Match match, UUID id, boolean hunter) {
+        if (Bukkit.getPlayer(id) != null) memberClaims.remove(id);
+        else if (memberClaims.containsKey(id)) return;
+        joined(match, id, hunter);
+    }
+
+    private void apply(Change c, long now) {
+        if (c.type == RESYNC) {
+            reconcile(c.from, c.round);
+            return;
+        }
+        Match match = host.match(c.matchId);
+        switch (c.type) {
+            case CLOCK:
+                // newest start / stop wins, wherever it happened: higher
+                // stamp, then higher node for two made concurrently
+                if (c.stamp < match.clockStamp || (c.stamp == match.clockStamp && c.node <= match.clockNode)) return;
+                match.clockStamp = c.stamp;
+                match.clockNode = c.node;
+                host.remoteClock(match, c.startedAt);
+                break;
+            case JOIN:
+                host.remoteJoin(match, c.id, c.hunter);
+                claim(memberClaims, c.id, match, c.from);
+                break;
+            case LEAVE:
+                host.remoteLeave(match, c.id);
+                memberClaims.remove(c.id);
+                break;
+            case RUNNER_KEY: {
+                // a runner playing here is tracked by their own task
+                if (Bukkit.getPlayer(c.id) != null) return;
+                World world = Bukkit.getWorld(c.world);
+                if (world == null) return;
+                Remote remote = remotes.get(c.id);
+                if (remote == null || remote.match != match) {
+                    if (remote != null) remote.match.runnerSnapshots.remove(c.id, remote.snapshot);
+                    RunnerTracker.Snapshot existing = match.runnerSnapshots.get(c.id);
+                    if (existing != null && !existing.isRemote()) return;
+                    remote = new Remote(match, existing != null ? existing : new RunnerTracker.Snapshot(c.id));
+                    match.runnerSnapshots.put(c.id, remote.snapshot);
+                    remotes.put(c.id, remote);
+                }
+                remote.seen = now;
+                remote.snapshot.place(world, c.x, c.y, c.z);
+                break;
+            }
+            case MINE_ADD: {
+                World world = Bukkit.getWorld(c.world);
+                if (world == null) return;
+                MineIndex.Mine mine = match.mines.restore(world.getUID(), c.pos, c.id, c.ttl == 0 ? Long.MAX_VALUE : now + c.ttl);
+                if (mine == null) {
+                    // already here: a resync listing it again, unless the
+                    // cell holds one of this backend's own
+                    mine = match.mines.get(world.getUID(), c.pos);
+                    if (mine == null || !mineClaims.containsKey(mine)) return;
+                }
+                claim(mineClaims, mine, match, c.from);
+                break;
+            }
+            case MINE_REMOVE: {
+                World world = Bukkit.getWorld(c.world);
+                if (world != null) match.mines.removeAt(world.getUID(), c.pos);
+                break;
+            }
+        }
+    }
+
+    private <K> void claim(Map<K, Claim> claims, K key, Match match, long peer) {
+        Claim claim = claims.get(key);
+        if (claim == null || claim.match != match) {
+            claim = new Claim(match);
+            claims.put(key, claim);
+        }
+        claim.peer = peer;
+        claim.round = rounds.getOrDefault(peer, 0L) + 1;
+    }
+
+    // peer has listed everything it has up to its resync round; drop what
+    // it stopped listing RESYNC_GRACE rounds ago. nothing is dropped on the
+    // first round heard from a backend, as what it named before then
+    // wasn't tied to a round yet
+    private void reconcile(long peer, long round) {
+        Long last = rounds.put(peer, round);
+        if (last == null) {
+            for (Claim claim : memberClaims.values()) {
+                if (claim.peer == peer) claim.round = round;
+            }
+            for (Claim claim : mineClaims.values()) {
+                if (claim.peer == peer) claim.round = round;
+            }
+            return;
+        }
+        long stale = round - RESYNC_GRACE;
+        memberClaims.entrySet().removeIf(e -> {
+            Claim claim = e.getValue();
+            if (claim.peer != peer) return false;
+            // playing here now, so ours
+            if (Bukkit.getPlayer(e.getKey()) != null) return true;
+            if (claim.round > stale) return false;
+            host.remoteLeave(claim.match, e.getKey());
+            return true;
+        });
+        mineClaims.entrySet().removeIf(e -> {
+            MineIndex.Mine mine = e.getKey();
+            Claim claim = e.getValue();
+            // triggered, expired or removed since; nothing to keep
+            if (!claim.match.mines.contains(mine)) return true;
+            if (claim.peer != peer || claim.round > stale) return false;
+            claim.match.mines.remove(mine);
+            return true;
+        });
+    }
+
+    // ------------------------------------------------------------------ //
+    // ENCODE (async)
+    // ------------------------------------------------------------------ //
+
+    private void send(List<Change> batch) {
+        List<byte[]> frames = new ArrayList<>();
+        synchronized (sent) {
+            Writer w = new Writer(MAX_FRAME + 256);
+            // the match the current frame's records are under, if any yet
+            String matchId = null;
+            header(w);
+            for (Change c : batch) {
+                int mark = w.size();
+                boolean fresh = mark == w.headerEnd;
+                if (c.matchId != null && !c.matchId.equals(matchId)) {
+                    w.u8(MATCH);
+                    w.string(c.matchId);
+                    matchId = c.matchId;
+                }
+                encode(w, c);
+                if (w.size() > MAX_FRAME && !fresh) {
+                    // didn't fit: close the frame before it and start over.
+                    // the cut record may have moved its runner's keyframe,
+                    // so a runner goes out as a full keyframe
+                    w.truncate(mark);
+                    frames.add(seal(w));
+                    w.reset();
+                    header(w);
+                    matchId = c.matchId;
+                    if (matchId != null) {
+                        w.u8(MATCH);
+                        w.string(matchId);
+                    }
+                    if (c.type == RUNNER_KEY) sent.get(c.id).world = null;
+                    encode(w, c);
+                }
+            }
+            if (w.size() > w.headerEnd) frames.add(seal(w));
+            for (byte[] frame : frames) {
+                bus.publish(frame);
+                framesSent.increment();
+                bytesSent.add(frame.length);
+            }
+        }
+    }
+
+    private void header(Writer w) {
+        w.u16(MAGIC);
+        w.u8(VERSION);
+        w.i64(node);
+        w.varlong(frameSeq++);
+        w.headerEnd = w.size();
+    }
+
+    // the frame with its tag on the end; under the sent lock
+    private byte[] seal(Writer w) {
+        byte[] frame = Arrays.copyOf(w.buf, w.size() + MAC_BYTES);
+        sendMac.update(frame, 0, w.size());
+        System.arraycopy(sendMac.doFinal(), 0, frame, w.size(), MAC_BYTES);
+        return frame;
+    }
+
+    private static Mac mac(byte[] secret) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+            return mac;
+        } catch (GeneralSecurityException ex) {
+            // every JRE ships HmacSHA256
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private void encode(Writer w, Change c) {
+        switch (c.type) {
+            case CLOCK:
+                w.u8(CLOCK);
+                w.varlong(c.stamp);
+                w.i64(c.node);
+                // sent as time into the run, so the receiver rebuilds the
+                // start on its own clock (off by transit time, not skew)
+                w.zigzag(c.startedAt < 0 ? -1L : Math.max(0L, System.currentTimeMillis() - c.startedAt));
+                break;
+            case JOIN:
+                w.u8(JOIN);
+                w.uuid(c.id);
+                w.u8(c.hunter ? 1 : 0);
+                break;
+            case LEAVE:
+                w.u8(LEAVE);
+                w.uuid(c.id);
+                break;
+            case RUNNER_KEY:
+                runner(w, c);
+                break;
+            case MINE_ADD:
+                w.u8(MINE_ADD);
+                w.string(c.world);
+                w.i64(c.pos);
+                w.uuid(c.id);
+                w.varlong(c.ttl);
+                break;
+            case MINE_REMOVE:
+                w.u8(MINE_REMOVE);
+                w.string(c.world);
+                w.i64(c.pos);
+                break;
+            case RESYNC:
+                w.u8(RESYNC);
+                w.varlong(c.round);
+                break;
+        }
+    }
+
+    // a delta from the runner's keyframe, or a new keyframe when there's
+    // none yet, the world changed, the delta is too big or it's time
+    private void runner(Writer w, Change c) {
+        long x = Math.round(c.x * UNIT), y = Math.round(c.y * UNIT), z = Math.round(c.z * UNIT);
+        Key key = sent.get(c.id);
+        if (key == null) {
+            key = new Key(nextHandle++, c.id);
+            sent.put(c.id, key);
+        }
+        long dx = x - key.x, dy = y - key.y, dz = z - key.z;
+        boolean delta = key.world != null && key.world.equals(c.world) && key.deltas < DELTAS_PER_KEY
+                && Math.abs(dx) < MAX_DELTA && Math.abs(dy) < MAX_DELTA && Math.abs(dz) < MAX_DELTA;
+        if (delta) {
+            key.deltas++;
+            w.u8(RUNNER_DELTA);
+            w.varint(key.handle);
+            w.u8(key.seq);
+            w.zigzag(dx);
+            w.zigzag(dy);
+            w.zigzag(dz);
+            return;
+        }
+        key.seq = (key.seq + 1) & 0xFF;
+        key.world = c.world;
+        key.x = x;
+        key.y = y;
+        key.z = z;
+        key.deltas = 0;
+        w.u8(RUNNER_KEY);
+        w.varint(key.handle);
+        w.u8(key.seq);
+        w.uuid(c.id);
+        w.string(c.world);
+        w.zigzag(x);
+        w.zigzag(y);
+        w.zigzag(z);
+    }
+
+    // ------------------------------------------------------------------ //
+    // DECODE (transport thread)
+    // ------------------------------------------------------------------ //
+
+    private void receive(byte[] frame) {
+        framesReceived.increment();
+        List<Change> changes = new ArrayList<>();
+        try {
+            synchronized (received) {
+                if (!verify(frame)) throw new IllegalArgumentException("bad frame tag");
+                decode(new Reader(frame, frame.length - MAC_BYTES), changes);
+            }
+        } catch (RuntimeException ex) {
+            // truncated, forged, replayed, too late or from something else on the port.
+            // an authentic frame only fails if this build can't read it, so
+            // nothing from a frame that fails is applied
+            framesDropped.increment();
+            return;
+        }
+        inbox.addAll(changes);
+    }
+
+    // under the received lock
+    private boolean verify(byte[] frame) {
+        int body = frame.length - MAC_BYTES;
+        if (body <= 0) return false;
+        receiveMac.update(frame, 0, body);
+        byte[] expected = Arrays.copyOf(receiveMac.doFinal(), MAC_BYTES);
+        return MessageDigest.isEqual(expected, Arrays.copyOfRange(frame, body, frame.length));
+    }
+
+    private void decode(Reader r, List<Change> out) {
+        if (r.u16() != MAGIC || r.u8() != VERSION) throw new IllegalArgumentException("not a sync frame");
+        long from = r.i64();
+        if (from == node) return;
+        long frame = r.varlong();
+        Peer peer = received.computeIfAbsent(from, k -> new Peer());
+        if (!peer.accept(frame)) throw new IllegalArgumentException("replayed or stale frame");
+        Map<Integer, Key> keys = peer.keys;
+
+        String matchId = null;
+        while (r.remaining() > 0) {
+            int type = r.u8();
+            if (type == MATCH) {
+                matchId = r.string();
+                if (!Match.isValidId(matchId)) throw new IllegalArgumentException("bad match id");
+                continue;
+            }
+            if (matchId == null && type != RESYNC) throw new IllegalArgumentException("record outside a match");
+            Change c = new Change(type == RUNNER_DELTA ? RUNNER_KEY : type, type == RESYNC ? null : matchId);
+            c.from = from;
+            switch (type) {
+                case CLOCK:
+                    c.stamp = r.varlong();
+                    c.node = r.i64();
+                    long elapsed = r.zigzag();
+                    c.startedAt = elapsed < 0 ? -1L : System.currentTimeMillis() - elapsed;
+                    break;
+                case JOIN:
+                    c.id = r.uuid();
+                    c.hunter = r.u8() != 0;
+                    break;
+                case LEAVE:
+                    c.id = r.uuid();
+                    break;
+                case RUNNER_KEY: {
+                    int handle = r.varint();
+                    int seq = r.u8();
+                    Key key = new Key(handle, r.uuid());
+                    key.seq = seq;
+                    key.world = r.string();
+                    key.x = r.zigzag();
+                    key.y = r.zigzag();
+                    key.z = r.zigzag();
+                    // a later frame already placed this runner
+                    Key current = keys.get(handle);
+                    if (current != null && current.frame > frame) continue;
+                    key.frame = frame;
+                    keys.put(handle, key);
+                    position(c, key, 0, 0, 0);
+                    break;
+                }
+                case RUNNER_DELTA: {
+                    Key key = keys.get(r.varint());
+                    int seq = r.u8();
+                    long dx = r.zigzag(), dy = r.zigzag(), dz = r.zigzag();
+                    // relative to a keyframe we never got; wait for the next one
+                    if (key == null || key.seq != seq || key.frame > frame) continue;
+                    key.frame = frame;
+                    position(c, key, dx, dy, dz);
+                    break;
+                }
+                case MINE_ADD:
+                    c.world = r.string();
+                    c.pos = r.i64();
+                    c.id = r.uuid();
+                    c.ttl = r.varlong();
+                    break;
+                case MINE_REMOVE:
+                    c.world = r.string();
+                    c.pos = r.i64();
+                    break;
+                case RESYNC:
+                    c.round = r.varlong();
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown record " + type);
+            }
+            out.add(c);
+        }
+    }
+
+    private static void position(Change c, Key key, long dx, long dy, long dz) {
+        c.id = key.id;
+        c.world = key.world;
+        c.x = (key.x + dx) / UNIT;
+        c.y = (key.y + dy) / UNIT;
+        c.z = (key.z + dz) / UNIT;
+    }
+
+    void close() {
+        bus.close();
+        outbox.clear();
+        positions.clear();
+        inbox.clear();
+    }
+
+    // ------------------------------------------------------------------ //
+    // BYTES
+    // ------------------------------------------------------------------ //
+
+    private static final class Writer {
+        byte[] buf;
+        private int size;
+        int headerEnd;
+
+        Writer(int capacity) {
+            this.buf = new byte[capacity];
+        }
+
+        int size() {
+            return size;
+        }
+
+        void truncate(int to) {
+            size = to;
+        }
+
+        void reset() {
+            size = 0;
+            headerEnd = 0;
+        }
+
+        void u8(int v) {
+            if (size == buf.length) buf = Arrays.copyOf(buf, buf.length * 2);
+            buf[size++] = (byte) v;
+        }
+
+        void u16(int v) {
+            u8(v >>> 8);
+            u8(v);
+        }
+
+        void i64(long v) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                u8((int) (v >>> shift));
+            }
+        }
+
+        void varint(int v) {
+            varlong(v & 0xFFFFFFFFL);
+        }
+
+        void varlong(long v) {
+            while ((v & ~0x7FL) != 0) {
+                u8((int) (v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            u8((int) v);
+        }
+
+        void zigzag(long v) {
+            varlong((v << 1) ^ (v >> 63));
+        }
+
+        void uuid(UUID id) {
+            i64(id.getMostSignificantBits());
+            i64(id.getLeastSignificantBits());
+        }
+
+        void string(String s) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            varint(bytes.length);
+            for (byte b : bytes) {
+                u8(b);
+            }
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] buf;
+        private final int end;
+        private int pos;
+
+        Reader(byte[] buf, int end) {
+            this.buf = buf;
+            this.end = end;
+        }
+
+        int remaining() {
+            return end - pos;
+        }
+
+        int u8() {
+            if (pos >= end) throw new IllegalArgumentException("frame ends early");
+            return buf[pos++] & 0xFF;
+        }
+
+        int u16() {
+            return (u8() << 8) | u8();
+        }
+
+        long i64() {
+            long v = 0;
+            for (int i = 0; i < 8; i++) {
+                v = (v << 8) | u8();
+            }
+            return v;
+        }
+
+        int varint() {
+            long v = varlong();
+            if (v > Integer.MAX_VALUE) throw new IllegalArgumentException("varint too big");
+            return (int) v;
+        }
+
+        long varlong() {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = u8();
+                v |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return v;
+            }
+            throw new IllegalArgumentException("varlong too long");
+        }
+
+        long zigzag() {
+            long v = varlong();
+            return (v >>> 1) ^ -(v & 1);
+        }
+
+        UUID uuid() {
+            return new UUID(i64(), i64());
+        }
+
+        String string() {
+            int length = varint();
+            if (length > remaining()) throw new IllegalArgumentException("string runs past the frame");
+            String s = new String(buf, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return s;
+        }
+    }
+}
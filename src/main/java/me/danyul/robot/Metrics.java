@@ -0,0 +1,196 @@
+package me.danyul.robot;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// in-process metrics: timing histograms, counters and gauges. everything is
+// registered in onEnable and never removed, so recording is just a few
+// lock-free adds with no allocation, safe from any region thread. read by
+// /robothunter metrics and the periodic prometheus-text export
+final class Metrics {
+
+    private static final String PREFIX = "robothunter_";
+
+    // log2 buckets: bucket i holds samples in [2^i, 2^(i+1)) ns, 40 buckets
+    // reach ~18 minutes which is plenty for anything that runs in a tick.
+    // the last bucket also takes anything longer, so it has no upper bound
+    static final class Histogram {
+        private static final int BUCKETS = 40;
+
+        final String name;
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+        private Histogram(String name) {
+            this.name = name;
+        }
+
+        void record(long nanos) {
+            if (nanos < 0) nanos = 0;
+            int bucket = Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(nanos | 1L));
+            buckets.incrementAndGet(bucket);
+            count.increment();
+            sum.add(nanos);
+            max.accumulate(nanos);
+        }
+
+        long count() {
+            return count.sum();
+        }
+
+        // largest value the bucket holding the q-th sample can hold (0 < q <= 1)
+        long percentile(double q) {
+            long total = count.sum();
+            if (total == 0) return 0;
+            long rank = (long) Math.ceil(q * total);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) return Math.min(upperBound(i), max.get());
+            }
+            return max.get();
+        }
+
+        // inclusive: nanos are whole, so [2^i, 2^(i+1)) ends at 2^(i+1) - 1
+        static long upperBound(int bucket) {
+            return (1L << (bucket + 1)) - 1;
+        }
+    }
+
+    static final class Counter {
+        final String name;
+        final String labels;
+        private final LongAdder value = new LongAdder();
+        // a total some component already keeps, read instead of value
+        private final LongSupplier source;
+
+        private Counter(String name, String labels, LongSupplier source) {
+            this.name = name;
+            this.labels = labels;
+            this.source = source;
+        }
+
+        void increment() {
+            value.increment();
+        }
+
+        long get() {
+            return source != null ? source.getAsLong() : value.sum();
+        }
+    }
+
+    private static final class Gauge {
+        final String name;
+        final LongSupplier value;
+
+        Gauge(String name, LongSupplier value) {
+            this.name = name;
+            this.value = value;
+        }
+    }
+
+    private final List<Histogram> histograms = new ArrayList<>();
+    private final List<Counter> counters = new ArrayList<>();
+    private final List<Gauge> gauges = new ArrayList<>();
+
+    // ---------- registration (onEnable only) ----------
+
+    Histogram histogram(String name) {
+        Histogram h = new Histogram(name);
+        histograms.add(h);
+        return h;
+    }
+
+    // labels is a prometheus label body, e.g. ability="grapple", or null
+    Counter counter(String name, String labels) {
+        Counter c = new Counter(name, labels, null);
+        counters.add(c);
+        return c;
+    }
+
+    // a total that only ever goes up but is counted elsewhere (a component's
+    // LongAdder); exported as a counter so rate() works on it. thread-safe
+    // supplier, as for gauges
+    void counter(String name, LongSupplier value) {
+        counters.add(new Counter(name, null, value));
+    }
+
+    // read on whatever thread reports, so the supplier must be thread-safe
+    void gauge(String name, LongSupplier value) {
+        gauges.add(new Gauge(name, value));
+    }
+
+    // ---------- reporting ----------
+
+    // one line per metric for chat / console
+    List<String> summary() {
+        List<String> lines = new ArrayList<>();
+        for (Histogram h : histograms) {
+            lines.add(String.format(Locale.ROOT, "%s: n=%d p50=%s p99=%s max=%s",
+                    h.name, h.count(), micros(h.percentile(0.50)), micros(h.percentile(0.99)), micros(h.max.get())));
+        }
+        for (Gauge g : gauges) {
+            lines.add(g.name + ": " + g.value.getAsLong());
+        }
+        for (Counter c : counters) {
+            if (c.get() == 0) continue;
+            lines.add(c.name + (c.labels != null ? "{" + c.labels + "}" : "") + ": " + c.get());
+        }
+        return lines;
+    }
+
+    private static String micros(long nanos) {
+        return String.format(Locale.ROOT, "%.1fus", nanos / 1000.0);
+    }
+
+    // prometheus text exposition format, written to a temp file and moved
+    // into place so scrapers never see half a file
+    void writePrometheus(Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (Histogram h : histograms) {
+                String name = PREFIX + h.name + "_nanos";
+                w.write("# TYPE " + name + " histogram\n");
+                long cumulative = 0;
+                // le is the largest value in the bucket; the open-ended last
+                // one is only reported as +Inf
+                for (int i = 0; i < Histogram.BUCKETS - 1; i++) {
+                    long n = h.buckets.get(i);
+                    if (n == 0) continue;
+                    cumulative += n;
+                    w.write(name + "_bucket{le=\"" + Histogram.upperBound(i) + "\"} " + cumulative + "\n");
+                }
+                w.write(name + "_bucket{le=\"+Inf\"} " + h.count() + "\n");
+                w.write(name + "_sum " + h.sum.sum() + "\n");
+                w.write(name + "_count " + h.count() + "\n");
+            }
+            for (Gauge g : gauges) {
+                w.write("# TYPE " + PREFIX + g.name + " gauge\n");
+                w.write(PREFIX + g.name + " " + g.value.getAsLong() + "\n");
+            }
+            String lastType = null;
+            for (Counter c : counters) {
+                String name = PREFIX + c.name;
+                if (!name.equals(lastType)) {
+                    w.write("# TYPE " + name + " counter\n");
+                    lastType = name;
+                }
+                w.write(name + (c.labels != null ? "{" + c.labels + "}" : "") + " " + c.get() + "\n");
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,322 @@
+package me.danyul.robot;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.*;
+
+// shock mines keyed by the exact block cell they sit in, one table per
+// world, so a trigger check is a hash lookup per cell the runner passes
+// through instead of a distance test against nearby mines. cells are packed
+// into one long (26 bits x, 26 bits z, 12 bits y, the vanilla block pos
+// layout). hunters place and runners poll from their own threads on Folia,
+// so every entry point takes the index's lock
+final class MineIndex {
+
+    // told about placements and removals other servers need to hear about
+    // (not expiry, which each side runs itself). called under the index
+    // lock, so it should only queue
+    interface Listener {
+        void placed(Mine mine);
+
+        void removed(Mine mine);
+    }
+
+    static final class Mine {
+        final UUID worldId;
+        final long pos;
+        final UUID ownerId;
+        final long expiresAt;
+        boolean removed;
+
+        Mine(UUID worldId, long pos, UUID ownerId, long expiresAt) {
+            this.worldId = worldId;
+            this.pos = pos;
+            this.ownerId = ownerId;
+            this.expiresAt = expiresAt;
+        }
+
+        int x() {
+            return unpackX(pos);
+        }
+
+        int y() {
+            return unpackY(pos);
+        }
+
+        int z() {
+            return unpackZ(pos);
+        }
+
+        // middle of the cell's floor, for sounds and the recorder
+        Location location(World world) {
+            return new Location(world, x() + 0.5, y(), z() + 0.5);
+        }
+    }
+
+    // world uid -> cell table
+    private final Map<UUID, CellTable> worlds = new HashMap<>();
+    // placement order per owner, oldest first (used for the cap)
+    private final Map<UUID, ArrayDeque<Mine>> byOwner = new HashMap<>();
+    // soonest expiry first. restored mines (saved, or from another server)
+    // and a ttl changed by reload don't arrive in expiry order, so this is
+    // a heap rather than placement order. removed mines leave lazily
+    private final PriorityQueue<Mine> byExpiry = new PriorityQueue<>(Comparator.comparingLong(mine -> mine.expiresAt));
+
+    private long ttlMillis = 300_000L;
+    private int maxPerOwner = 9;
+    private int size;
+    private Listener listener;
+
+    synchronized void configure(long ttlMillis, int maxPerOwner) {
+        this.ttlMillis = ttlMillis;
+        this.maxPerOwner = maxPerOwner;
+    }
+
+    synchronized void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    static long pack(int x, int y, int z) {
+        return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (y & 0xFFF);
+    }
+
+    static int unpackX(long pos) {
+        return (int) (pos >> 38);
+    }
+
+    static int unpackY(long pos) {
+        return (int) (pos << 52 >> 52);
+    }
+
+    static int unpackZ(long pos) {
+        return (int) (pos << 26 >> 38);
+    }
+
+    // the mine goes in the air cell above its ground block; false if that
+    // cell already holds one
+    synchronized boolean add(World world, int x, int y, int z, UUID ownerId, long now) {
+        long pos = pack(x, y, z);
+        CellTable table = worlds.computeIfAbsent(world.getUID(), k -> new CellTable());
+        if (table.get(pos) != null) return false;
+
+        ArrayDeque<Mine> owned = byOwner.computeIfAbsent(ownerId, k -> new ArrayDeque<>());
+        while (maxPerOwner > 0 && owned.size() >= maxPerOwner) {
+            Mine oldest = owned.peekFirst();
+            remove(oldest);
+            if (listener != null) listener.removed(oldest);
+        }
+        Mine mine = new Mine(world.getUID(), pos, ownerId, ttlMillis > 0 ? now + ttlMillis : Long.MAX_VALUE);
+        insert(table, mine, owned);
+        if (listener != null) listener.placed(mine);
+        return true;
+    }
+
+    // put back a saved (or another server's) mine with its original expiry,
+    // no cap check and no listener, in any order. null if the cell already
+    // holds one
+    synchronized Mine restore(UUID worldId, long pos, UUID ownerId, long expiresAt) {
+        CellTable table = worlds.computeIfAbsent(worldId, k -> new CellTable());
+        if (table.get(pos) != null) return null;
+        Mine mine = new Mine(worldId, pos, ownerId, expiresAt);
+        insert(table, mine, byOwner.computeIfAbsent(ownerId, k -> new ArrayDeque<>()));
+        return mine;
+    }
+
+    synchronized Mine get(UUID worldId, long pos) {
+        CellTable table = worlds.get(worldId);
+        return table != null ? table.get(pos) : null;
+    }
+
+    // still placed: not triggered, expired, capped or removed
+    synchronized boolean contains(Mine mine) {
+        return !mine.removed;
+    }
+
+    private void insert(CellTable table, Mine mine, ArrayDeque<Mine> owned) {
+        owned.addLast(mine);
+        if (mine.expiresAt != Long.MAX_VALUE) byExpiry.add(mine);
+        table.put(mine.pos, mine);
+        size++;
+    }
+
+    // every live mine, oldest first per owner (for saving)
+    synchronized List<Mine> snapshot() {
+        List<Mine> all = new ArrayList<>(size);
+        for (ArrayDeque<Mine> owned : byOwner.values()) {
+            all.addAll(owned);
+        }
+        return all;
+    }
+
+    // another server's removal; no listener
+    synchronized void removeAt(UUID worldId, long pos) {
+        CellTable table = worlds.get(worldId);
+        Mine mine = table != null ? table.get(pos) : null;
+        if (mine != null) remove(mine);
+    }
+
+    synchronized void remove(Mine mine) {
+        if (mine.removed) return;
+        mine.removed = true;
+        size--;
+
+        CellTable table = worlds.get(mine.worldId);
+        if (table != null) {
+            table.remove(mine.pos);
+            if (table.count == 0) worlds.remove(mine.worldId);
+        }
+
+        ArrayDeque<Mine> owned = byOwner.get(mine.ownerId);
+        if (owned != null) {
+            owned.remove(mine);
+            if (owned.isEmpty()) byOwner.remove(mine.ownerId);
+        }
+    }
+
+    // drop mines past their ttl; O(expired log n)
+    synchronized void purgeExpired(long now) {
+        Mine head;
+        while ((head = byExpiry.peek()) != null && (head.removed || head.expiresAt <= now)) {
+            byExpiry.poll();
+            remove(head);
+        }
+    }
+
+    // remove every mine in the cells a runner's feet pass through going from
+    // a to b, and hand them to out. walks the cells one face crossing at a
+    // time, so a fast runner can't step over a mine between two checks
+    synchronized void pollAlong(World world, double ax, double ay, double az, double bx, double by, double bz,
+                                List<Mine> out) {
+        if (size == 0) return;
+        CellTable table = worlds.get(world.getUID());
+        if (table == null) return;
+
+        int x = (int) Math.floor(ax), y = (int) Math.floor(ay), z = (int) Math.floor(az);
+        int ex = (int) Math.floor(bx), ey = (int) Math.floor(by), ez = (int) Math.floor(bz);
+        pollCell(table, x, y, z, out);
+
+        double dx = bx - ax, dy = by - ay, dz = bz - az;
+        int stepX = dx > 0 ? 1 : -1, stepY = dy > 0 ? 1 : -1, stepZ = dz > 0 ? 1 : -1;
+        double deltaX = dx != 0 ? Math.abs(1.0 / dx) : Double.MAX_VALUE;
+        double deltaY = dy != 0 ? Math.abs(1.0 / dy) : Double.MAX_VALUE;
+        double deltaZ = dz != 0 ? Math.abs(1.0 / dz) : Double.MAX_VALUE;
+        // how far along a -> b (0..1) the next x / y / z face is
+        double nextX = dx != 0 ? (dx > 0 ? x + 1 - ax : ax - x) * deltaX : Double.MAX_VALUE;
+        double nextY = dy != 0 ? (dy > 0 ? y + 1 - ay : ay - y) * deltaY : Double.MAX_VALUE;
+        double nextZ = dz != 0 ? (dz > 0 ? z + 1 - az : az - z) * deltaZ : Double.MAX_VALUE;
+
+        int steps = Math.abs(ex - x) + Math.abs(ey - y) + Math.abs(ez - z);
+        for (int i = 0; i < steps; i++) {
+            if (nextX < nextY && nextX < nextZ) {
+                x += stepX;
+                nextX += deltaX;
+            } else if (nextY < nextZ) {
+                y += stepY;
+                nextY += deltaY;
+            } else {
+                z += stepZ;
+                nextZ += deltaZ;
+            }
+            pollCell(table, x, y, z, out);
+        }
+        // rounding on exact corner crossings can end one cell off
+        if (x != ex || y != ey || z != ez) pollCell(table, ex, ey, ez, out);
+    }
+
+    // feet in cell y: a mine sits in y, or in y + 1 when the runner stands
+    // inside a short ground block (slab, path, soul sand)
+    private void pollCell(CellTable table, int x, int y, int z, List<Mine> out) {
+        Mine mine = table.get(pack(x, y, z));
+        if (mine != null) trigger(mine, out);
+        mine = table.get(pack(x, y + 1, z));
+        if (mine != null) trigger(mine, out);
+    }
+
+    private void trigger(Mine mine, List<Mine> out) {
+        out.add(mine);
+        remove(mine);
+        if (listener != null) listener.removed(mine);
+    }
+
+    synchronized void clear() {
+        worlds.clear();
+        byOwner.clear();
+        byExpiry.clear();
+        size = 0;
+    }
+
+    // ---------- storage ----------
+
+    // open-addressing packed cell -> mine map, avoids boxing a Long per lookup
+    private static final class CellTable {
+        private long[] keys = new long[16];
+        private Mine[] values = new Mine[16];
+        private int count;
+
+        private static int slot(long key, int mask) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+
+        Mine get(long key) {
+            int mask = keys.length - 1;
+            for (int i = slot(key, mask); values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) return values[i];
+            }
+            return null;
+        }
+
+        // caller checks the key isn't present yet
+        void put(long key, Mine mine) {
+            if ((count + 1) * 4 > keys.length * 3) grow();
+            insert(key, mine);
+        }
+
+        void remove(long key) {
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            while (values[i] != null && keys[i] != key) i = (i + 1) & mask;
+            if (values[i] == null) return;
+            values[i] = null;
+            count--;
+
+            // re-seat the rest of the probe run so lookups don't stop early
+            for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+                long k = keys[j];
+                Mine v = values[j];
+                values[j] = null;
+                count--;
+                insert(k, v);
+            }
+        }
+
+        private void insert(long key, Mine mine) {
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            while (values[i] != null) i = (i + 1) & mask;
+            keys[i] = key;
+            values[i] = mine;
+            count++;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            Mine[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new Mine[oldValues.length * 2];
+            count = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != null) insert(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+}
@@ -1,228 +1,525 @@
 package me.danyul.robot;
 
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.Sound;
+import org.bukkit.World;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.enchantments.Enchantment;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.entity.EntityDamageByEntityEvent;
 import org.bukkit.event.entity.FoodLevelChangeEvent;
+import org.bukkit.event.entity.PlayerDeathEvent;
 import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.event.player.PlayerDropItemEvent;
+import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.event.player.PlayerRespawnEvent;
-import org.bukkit.inventory.Inventory;
-import org.bukkit.inventory.ItemFlag;
-import org.bukkit.inventory.ItemStack;
-import org.bukkit.inventory.meta.CompassMeta;
-import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.inventory.EquipmentSlot;
+import org.bukkit.inventory.InventoryHolder;
 import org.bukkit.plugin.java.JavaPlugin;
-import org.bukkit.potion.PotionEffect;
-import org.bukkit.potion.PotionEffectType;
-import org.bukkit.scheduler.BukkitRunnable;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.stream.Collectors;
 
 public class PlayerControlledRobotHunterPlugin extends JavaPlugin implements Listener, CommandExecutor, TabCompleter {
 
-    private static final String ABILITY_GUI_TITLE = ChatColor.DARK_RED + "Robot Abilities";
-    // melee hit cooldown so hunter can’t spam
-    private static final long ATTACK_COOLDOWN_MS = 600L;
+    // match used when a command doesn't name one
+    private static final String DEFAULT_MATCH = "default";
+
+    // running hunts by id
+    private final Map<String, Match> matches = new ConcurrentSkipListMap<>();
+    // every hunter and runner -> the match they're in
+    private final Map<UUID, Match> playerMatch = new ConcurrentHashMap<>();
+    // every hunter's state, one lookup per event
+    private final Map<UUID, HunterState> hunters = new ConcurrentHashMap<>();
+
+    // the reloadable part of config.yml, swapped whole by /robothunter reload.
+    // read it once into a local per handler so one event sees one config
+    private volatile Settings settings;
+    private AbilityEngine abilityEngine;
+
+    // potion effects, resolved in onEnable
+    private RobotEffects effects;
+
+    private CompassTracker compassTracker;
+    // null when hud.enabled is off
+    private HunterHud hud;
+    // null when quick_cast.enabled is off
+    private AbilityCore core;
+
+    private Scheduling scheduling;
+    // match state on disk, written in the background when something changed
+    private MatchStore store;
+    // match event log, null when recording.enabled is off
+    private Recorder recorder;
+    // each hunter's / runner's repeating task on their own entity scheduler
+    private final Map<UUID, ScheduledTask> playerTasks = new ConcurrentHashMap<>();
+
+    // every runner's position, sampled once per tick by their own task
+    private final RunnerTracker runnerTracker = new RunnerTracker();
+
+    // ability/respawn timers, advanced by the global tick
+    private final TickWheel timers = new TickWheel();
+    private Feedback feedback;
+    private RunnerPredictor predictor;
+    // cross-backend match state, null unless sync.enabled
+    private MatchSync sync;
+    // global thread only
+    private long globalTicks;
+
+    // ---------- metrics ----------
+
+    private final Metrics metrics = new Metrics();
+    private final Metrics.Histogram compassTaskTime = metrics.histogram("compass_task");
+    private final Metrics.Histogram mineCheckTime = metrics.histogram("mine_check");
+    private final Metrics.Histogram attackEventTime = metrics.histogram("event_hunter_attack");
+    private final Metrics.Histogram clickEventTime = metrics.histogram("event_inventory_click");
+    private final Metrics.Histogram interactEventTime = metrics.histogram("event_core_interact");
+    private final Metrics.Histogram foodEventTime = metrics.histogram("event_food_change");
+    private final Metrics.Histogram moveEventTime = metrics.histogram("event_runner_move");
+    private final Metrics.Histogram predictionTime = metrics.histogram("prediction_search");
+    // by Ability ordinal
+    private final Metrics.Counter[] abilityActivations = new Metrics.Counter[Ability.values().length];
 
-    // who is a hunter
-    private final Set<UUID> hunters = new HashSet<>();
-    // hunter spawn points
-    private final Map<UUID, Location> hunterSpawn = new HashMap<>();
-    // last attack times
-    private final Map<UUID, Long> lastAttackTime = new HashMap<>();
+    // ------------------------------------------------------------------ //
+    // ENABLE / DISABLE
+    // ------------------------------------------------------------------ //
 
-    // when the run actually starts (set by /robothunter start)
-    private long gameStartTime = -1L;
+    @Override
+    public void onEnable() {
+        try {
+            effects = RobotEffects.resolve();
+        } catch (IllegalStateException ex) {
+            getLogger().severe(ex.getMessage() + " - disabling.");
+            getServer().getPluginManager().disablePlugin(this);
+            return;
+        }
 
-    // runner to track
-    private UUID runnerId = null;
+        scheduling = new Scheduling(this);
+        feedback = new Feedback(scheduling);
+        predictor = new RunnerPredictor(scheduling, predictionTime);
+        abilityEngine = new AbilityEngine(scheduling, timers, feedback, predictor);
+        saveDefaultConfig();
+        try {
+            settings = Settings.load(getConfig());
+        } catch (IllegalArgumentException ex) {
+            getLogger().severe("Invalid config: " + ex.getMessage() + " - disabling.");
+            getServer().getPluginManager().disablePlugin(this);
+            return;
+        }
+        compassTracker = new CompassTracker(Enchantment.getByName("UNBREAKING"));
+        applySettings(settings);
+        if (getConfig().getBoolean("hud.enabled", true)) hud = new HunterHud();
+        if (getConfig().getBoolean("quick_cast.enabled", true)) core = new AbilityCore(this);
+        setupRecording();
+        setupSync();
+        setupMetrics();
+        setupPersistence();
 
-    // state flags
-    private final Set<UUID> cameraMode = new HashSet<>();
-    private final Set<UUID> overdriveActive = new HashSet<>();
-    private final Set<UUID> shieldActive = new HashSet<>();
+        getServer().getPluginManager().registerEvents(this, this);
+        getServer().getPluginManager().registerEvents(compassTracker, this);
+        Objects.requireNonNull(getCommand("robothunter")).setExecutor(this);
+        Objects.requireNonNull(getCommand("robothunter")).setTabCompleter(this);
 
-    // unlock times (seconds after /robothunter start)
-    private final Map<Ability, Integer> abilityUnlockSeconds = new EnumMap<>(Ability.class);
-    // one-time abilities per hunter
-    private final Map<UUID, EnumSet<Ability>> usedAbilities = new HashMap<>();
-    // ability selected while GUI is open (activate on close)
-    private final Map<UUID, Ability> pendingAbility = new HashMap<>();
+        startTickTask();
 
-    // helper to safely get potion effects by name
-    private PotionEffectType effect(String name) {
-        PotionEffectType type = PotionEffectType.getByName(name);
-        if (type == null) {
-            throw new IllegalStateException("Unknown potion effect: " + name);
-        }
-        return type;
+        getLogger().info("PlayerControlledRobotHunter enabled.");
     }
 
-    // ------------------------------------------------------------------ //
-    // ABILITIES
-    // ------------------------------------------------------------------ //
+    @Override
+    public void onDisable() {
+        timers.cancelAll();
+        for (ScheduledTask task : playerTasks.values()) {
+            task.cancel();
+        }
+        playerTasks.clear();
+        if (scheduling != null) scheduling.cancelAll();
+        if (hud != null) hud.clear();
+        if (sync != null) sync.close();
+        // async tasks are gone by now, so the last save runs here
+        if (store != null) store.saveIfDirty(matches.values());
+        if (recorder != null) {
+            for (Match match : matches.values()) {
+                recorder.end(match.recording);
+                match.recording = -1;
+            }
+            recorder.shutdown();
+        }
+        getLogger().info("PlayerControlledRobotHunter disabled.");
+    }
 
-    private enum Ability {
-        SPEED_OVERDRIVE("speed_overdrive", ChatColor.GREEN + "Speed Overdrive", Material.SUGAR, 300),
-        ROCKET_JUMP("rocket_jump", ChatColor.AQUA + "Rocket Jump", Material.FIRE_CHARGE, 360),
-        ZOOM_MODE("zoom_mode", ChatColor.YELLOW + "Zoom Mode", Material.SPYGLASS, 420),
-        SONAR_SCAN("sonar_scan", ChatColor.BLUE + "Sonar Scan", Material.NAUTILUS_SHELL, 480),
-        MINES("mines", ChatColor.GOLD + "Shock Mines", Material.TNT, 600),
-        SHIELD("shield", ChatColor.DARK_AQUA + "Shield Mode", Material.SHIELD, 720),
-        SECURITY_CAMERA("security_camera", ChatColor.DARK_GREEN + "Security Camera", Material.ENDER_EYE, 900),
-        GRAPPLE("grapple", ChatColor.DARK_PURPLE + "Grapple Pull", Material.FISHING_ROD, 1020),
-        DRONE_STRIKE("drone_strike", ChatColor.RED + "Drone Strike", Material.FIREWORK_ROCKET, 1200),
-        THERMAL_VISION("thermal_vision", ChatColor.LIGHT_PURPLE + "Thermal Vision", Material.MAGMA_CREAM, 1320);
+    // pushes the few values components keep themselves; everything else is
+    // read from the settings field as it's used
+    private void applySettings(Settings next) {
+        settings = next;
+        compassTracker.setUpdateDistance(next.compassUpdateDistance);
+        runnerTracker.setPublishDistance(next.trackingPublishDistance);
+        feedback.configure(next.feedbackViewRadius, next.feedbackBudget);
+        predictor.configure(next.predictionPathfind, next.predictionMaxNodes);
+        for (Match match : matches.values()) {
+            match.mines.configure(next.mineTtlMillis, next.mineMaxPerOwner);
+        }
+    }
 
-        final String key;
-        final String displayName;
-        final Material icon;
-        final int defaultUnlockSeconds;
+    // parse + compile off the main thread, swap on the global thread. a bad
+    // file leaves the running config untouched
+    private void reloadSettings(CommandSender sender) {
+        File file = new File(getDataFolder(), "config.yml");
+        scheduling.async(() -> {
+            long start = System.nanoTime();
+            Settings next;
+            try {
+                YamlConfiguration cfg = new YamlConfiguration();
+                cfg.load(file);
+                InputStream bundled = getResource("config.yml");
+                if (bundled != null) {
+                    try (Reader reader = new InputStreamReader(bundled, StandardCharsets.UTF_8)) {
+                        cfg.setDefaults(YamlConfiguration.loadConfiguration(reader));
+                    }
+                }
+                next = Settings.load(cfg);
+            } catch (IOException | InvalidConfigurationException | IllegalArgumentException ex) {
+                reply(sender, ChatColor.RED + "Reload failed, keeping the current config: " + ex.getMessage());
+                return;
+            }
+            long took = (System.nanoTime() - start) / 1_000_000L;
+            scheduling.global(() -> {
+                applySettings(next);
+                reply(sender, ChatColor.GREEN + "RobotHunter config reloaded (" + took + " ms).");
+            });
+        });
+    }
 
-        Ability(String key, String displayName, Material icon, int defaultUnlockSeconds) {
-            this.key = key;
-            this.displayName = displayName;
-            this.icon = icon;
-            this.defaultUnlockSeconds = defaultUnlockSeconds;
+    // message from any thread, delivered on the receiver's own
+    private void reply(CommandSender sender, String message) {
+        if (sender instanceof Player) {
+            Player p = (Player) sender;
+            scheduling.run(p, () -> p.sendMessage(message));
+        } else {
+            scheduling.global(() -> sender.sendMessage(message));
         }
     }
 
-    // ---------- mines ----------
+    private void setupMetrics() {
+        metrics.gauge("matches", matches::size);
+        metrics.gauge("hunters", hunters::size);
+        metrics.gauge("runners", () -> {
+            long n = 0;
+            for (Match match : matches.values()) n += match.runners.size();
+            return n;
+        });
+        metrics.gauge("mines", () -> {
+            long n = 0;
+            for (Match match : matches.values()) n += match.mines.size();
+            return n;
+        });
+        metrics.gauge("pending_timers", timers::pending);
+        metrics.gauge("player_tasks", playerTasks::size);
+        metrics.counter("feedback_sent_total", feedback.sent::sum);
+        metrics.counter("feedback_culled_total", feedback.culled::sum);
+        metrics.counter("feedback_over_budget_total", feedback.dropped::sum);
+        metrics.counter("prediction_searches_total", predictor.searches::sum);
+        metrics.counter("prediction_shared_total", predictor.joined::sum);
+        metrics.counter("prediction_chunks_copied_total", predictor.chunksCopied::sum);
+        metrics.gauge("prediction_chunk_cache_bytes", predictor::chunkCacheBytes);
+        if (sync != null) {
+            metrics.counter("sync_frames_sent_total", sync.framesSent::sum);
+            metrics.counter("sync_bytes_sent_total", sync.bytesSent::sum);
+            metrics.counter("sync_frames_received_total", sync.framesReceived::sum);
+            metrics.counter("sync_frames_dropped_total", sync.framesDropped::sum);
+        }
+        if (recorder != null) metrics.counter("recorder_dropped_total", recorder::dropped);
+        for (Ability ability : Ability.values()) {
+            abilityActivations[ability.ordinal()] = metrics.counter("ability_activations_total", "ability=\"" + ability.key + "\"");
+        }
+
+        long interval = getConfig().getLong("metrics.export_interval_seconds", 60L);
+        if (interval <= 0) return;
+        Path file = getDataFolder().toPath().resolve(getConfig().getString("metrics.file", "metrics.prom"));
+        scheduling.asyncTimer(interval, interval, () -> {
+            try {
+                metrics.writePrometheus(file);
+            } catch (IOException ex) {
+                getLogger().warning("Could not write metrics to " + file + ": " + ex.getMessage());
+            }
+        });
+    }
 
-    private static class Mine {
-        final Location loc;
-        final UUID ownerId;
+    private void setupRecording() {
+        if (!getConfig().getBoolean("recording.enabled", true)) return;
+        recorder = new Recorder(getDataFolder().toPath().resolve(getConfig().getString("recording.folder", "recordings")), getLogger());
+        runnerTracker.addListener((match, runner, at) -> record(match, Recorder.RUNNER_POS, 0, 0f, runner.id, null, at));
+    }
 
-        Mine(Location loc, UUID ownerId) {
-            this.loc = loc;
-            this.ownerId = ownerId;
+    private void setupSync() {
+        if (!getConfig().getBoolean("sync.enabled", false)) return;
+        String secret = getConfig().getString("sync.secret", "");
+        if (secret == null || secret.length() < 16) {
+            getLogger().warning("Match sync disabled: sync.secret must be at least 16 characters, the same on every backend");
+            return;
         }
+        MatchBus bus;
+        try {
+            List<InetSocketAddress> peers = new ArrayList<>();
+            for (String peer : getConfig().getStringList("sync.peers")) {
+                peers.add(DatagramBus.parsePeer(peer));
+            }
+            InetSocketAddress bind = new InetSocketAddress(getConfig().getString("sync.bind", "127.0.0.1"), getConfig().getInt("sync.port", 25590));
+            bus = new DatagramBus(bind, peers, getLogger());
+        } catch (SocketException | IllegalArgumentException ex) {
+            getLogger().warning("Match sync disabled: " + ex.getMessage());
+            return;
+        }
+        sync = new MatchSync(bus, secret.getBytes(StandardCharsets.UTF_8), scheduling, new MatchSync.Host() {
+            @Override
+            public Match match(String id) {
+                return getOrCreateMatch(id);
+            }
+
+            @Override
+            public void remoteClock(Match match, long startedAt) {
+                if (startedAt >= 0) startRun(match, startedAt);
+                else if (match.gameStartTime >= 0) stopRun(match);
+            }
+
+            @Override
+            public void remoteJoin(Match match, UUID id, boolean hunter) {
+                joinFromRemote(match, id, hunter);
+            }
+
+            @Override
+            public void remoteLeave(Match match, UUID id) {
+                if (playerMatch.get(id) == match) leaveMatch(id, Bukkit.getPlayer(id));
+            }
+        }, getConfig().getInt("sync.flush_ticks", 2));
+        runnerTracker.addListener(sync::runnerMoved);
     }
 
-    private final List<Mine> mines = new ArrayList<>();
+    private void setupPersistence() {
+        store = new MatchStore(getDataFolder().toPath().resolve(getConfig().getString("persistence.file", "matches.dat")), getLogger());
+
+        long start = System.nanoTime();
+        int loaded;
+        try {
+            loaded = store.load(this::getOrCreateMatch, System.currentTimeMillis());
+        } catch (IOException ex) {
+            getLogger().warning("Could not load saved matches: " + ex.getMessage());
+            loaded = 0;
+        }
+        for (Match match : matches.values()) {
+            for (UUID id : match.runners) {
+                playerMatch.put(id, match);
+            }
+            for (HunterState hunter : match.hunters.values()) {
+                hunters.put(hunter.id, hunter);
+                playerMatch.put(hunter.id, match);
+            }
+        }
+        // plugin reloads: players are already online
+        for (Player p : Bukkit.getOnlinePlayers()) {
+            resumePlayer(p);
+        }
+        if (loaded > 0) {
+            getLogger().info("Restored " + loaded + " match(es) in " + (System.nanoTime() - start) / 1_000_000L + " ms.");
+        }
+
+        long interval = Math.max(1L, getConfig().getLong("persistence.save_interval_seconds", 10L));
+        scheduling.asyncTimer(interval, interval, () -> store.saveIfDirty(matches.values()));
+    }
 
     // ------------------------------------------------------------------ //
-    // ENABLE / DISABLE
+    // MATCHES
     // ------------------------------------------------------------------ //
 
-    @Override
-    public void onEnable() {
-        saveDefaultConfig();
-        loadAbilityConfig();
+    private Match getOrCreateMatch(String id) {
+        return matches.computeIfAbsent(id, k -> {
+            Match match = new Match(k);
+            Settings current = settings;
+            match.mines.configure(current.mineTtlMillis, current.mineMaxPerOwner);
+            if (sync != null) match.mines.setListener(sync.mineListener(match));
+            return match;
+        });
+    }
 
-        getServer().getPluginManager().registerEvents(this, this);
-        Objects.requireNonNull(getCommand("robothunter")).setExecutor(this);
-        Objects.requireNonNull(getCommand("robothunter")).setTabCompleter(this);
+    // match id from args[index], or the default match
+    private static String matchArg(String[] args, int index) {
+        return args.length > index ? args[index].toLowerCase(Locale.ROOT) : DEFAULT_MATCH;
+    }
 
-        startCompassTask();
-        startMineCheckTask();
+    // shared by /robothunter start and a start on another backend
+    private void startRun(Match match, long startedAt) {
+        timers.cancelMatch(match);
+        match.gameStartTime = startedAt;
+        match.resetRun();
+        if (recorder != null) {
+            recorder.end(match.recording);
+            match.recording = recorder.begin(match.id, match.gameStartTime);
+        }
+        store.markDirty();
+        Bukkit.broadcastMessage(ChatColor.RED + "[RobotHunter] Run " + match.id + " has started!");
+    }
 
-        getLogger().info("PlayerControlledRobotHunter enabled.");
+    private void stopRun(Match match) {
+        timers.cancelMatch(match);
+        match.gameStartTime = -1L;
+        match.resetRun();
+        endRecording(match);
+        dropMatchIfEmpty(match);
+        store.markDirty();
+        Bukkit.broadcastMessage(ChatColor.RED + "[RobotHunter] Run " + match.id + " has ended.");
     }
 
-    @Override
-    public void onDisable() {
-        getLogger().info("PlayerControlledRobotHunter disabled.");
+    // after a local start / stop / clear, for the other backends; global thread
+    private void publishClock(Match match) {
+        if (sync != null) sync.clock(match);
     }
 
-    private void loadAbilityConfig() {
-        for (Ability ability : Ability.values()) {
-            int unlock = getConfig().getInt(
-                    "abilities." + ability.key + ".unlock_seconds",
-                    ability.defaultUnlockSeconds
-            );
-            if (unlock < 300) unlock = 300; // minimum 5 minutes
-            abilityUnlockSeconds.put(ability, unlock);
+    private void dropMatchIfEmpty(Match match) {
+        if (match.isEmpty() && !match.isRunning()) {
+            matches.remove(match.id);
         }
     }
 
+    // ---------- recording ----------
+
+    private void endRecording(Match match) {
+        if (recorder == null) return;
+        recorder.end(match.recording);
+        match.recording = -1;
+    }
+
+    // no-op unless the match's run is being recorded
+    private void record(Match match, byte type, int arg, float value, UUID actor, UUID target, Location at) {
+        if (recorder == null || match.recording < 0) return;
+        World world = at.getWorld();
+        recorder.record(match.recording, type, (byte) arg, value, actor, target,
+                world != null ? world.getUID() : null, at.getX(), at.getY(), at.getZ());
+    }
+
     // ------------------------------------------------------------------ //
-    // COMPASS
+    // SHARED TICK
     // ------------------------------------------------------------------ //
 
-    private void startCompassTask() {
-        new BukkitRunnable() {
-            @Override
-            public void run() {
-                if (runnerId == null) return;
-                Player runner = Bukkit.getPlayer(runnerId);
-                if (runner == null || !runner.isOnline()) return;
-
-                for (UUID hunterId : hunters) {
-                    Player hunter = Bukkit.getPlayer(hunterId);
-                    if (hunter == null || !hunter.isOnline()) continue;
-
-                    ItemStack compass = null;
-                    for (int i = 0; i < hunter.getInventory().getSize(); i++) {
-                        ItemStack item = hunter.getInventory().getItem(i);
-                        if (item != null && item.getType() == Material.COMPASS) {
-                            compass = item;
-                            break;
-                        }
-                    }
-                    if (compass == null) {
-                        compass = new ItemStack(Material.COMPASS);
-                        hunter.getInventory().addItem(compass);
-                    }
+    // the global tick only drives the timer wheel, the feedback flush and the
+    // hud frames; anything that touches a player or a chunk is handed to that
+    // player's / chunk's scheduler
+    private void startTickTask() {
+        scheduling.globalTimer(1L, 1L, this::globalTick);
+        if (hud != null) {
+            scheduling.globalTimer(20L, 20L, () -> HunterHud.computeFrames(matches.values(), settings.unlockSeconds));
+        }
+    }
 
-                    ItemMeta meta = compass.getItemMeta();
-                    if (meta instanceof CompassMeta) {
-                        CompassMeta cMeta = (CompassMeta) meta;
-                        cMeta.setDisplayName(ChatColor.AQUA + "Runner Tracker");
-                        cMeta.setLodestone(runner.getLocation());
-                        cMeta.setLodestoneTracked(false);
-
-                        Enchantment glow = Enchantment.getByName("UNBREAKING");
-                        if (glow != null) {
-                            cMeta.addEnchant(glow, 1, true);
-                            cMeta.addItemFlags(ItemFlag.HIDE_ENCHANTS);
-                        }
-                        compass.setItemMeta(cMeta);
-                    }
-                }
+    // timers first so what they queue goes out this tick
+    private void globalTick() {
+        globalTicks++;
+        if (sync != null) sync.tick(globalTicks, matches.values());
+        timers.advance();
+        int shimmer = settings.mineShimmerTicks;
+        if (shimmer > 0 && globalTicks % shimmer == 0) {
+            for (Match match : matches.values()) {
+                feedback.shimmer(match);
             }
-        }.runTaskTimer(this, 20L, 20L);
+        }
+        feedback.flush();
+    }
+
+    // wheel timer whose action runs on the player's own thread
+    private void later(TickWheel.Kind kind, Player p, Match match, long delayTicks, Runnable action) {
+        timers.schedule(kind, p.getUniqueId(), match, delayTicks, () -> scheduling.run(p, action));
     }
 
     // ------------------------------------------------------------------ //
-    // MINES CHECK
+    // PER-PLAYER TASKS
     // ------------------------------------------------------------------ //
 
-    private void startMineCheckTask() {
-        new BukkitRunnable() {
-            @Override
-            public void run() {
-                if (runnerId == null) return;
-                Player runner = Bukkit.getPlayer(runnerId);
-                if (runner == null || !runner.isOnline()) return;
-
-                Iterator<Mine> it = mines.iterator();
-                while (it.hasNext()) {
-                    Mine mine = it.next();
-                    if (!mine.loc.getWorld().equals(runner.getWorld())) continue;
-                    if (mine.loc.distanceSquared(runner.getLocation()) <= 1.5 * 1.5) {
-                        runner.getWorld().playSound(mine.loc, Sound.ENTITY_CREEPER_PRIMED, 1f, 1.2f);
-                        runner.addPotionEffect(new PotionEffect(effect("SLOWNESS"), 60, 1, false, true, true));
-                        runner.damage(2.0);
-                        it.remove();
-                    }
-                }
+    // once a second on the hunter's thread: compass, hud, then the open menu's countdown
+    private void startHunterTask(Player p, HunterState hunter) {
+        replacePlayerTask(p.getUniqueId(), scheduling.timer(p, 20L, 20L, () -> {
+            long start = System.nanoTime();
+            RunnerTracker.Snapshot nearest = compassTracker.track(p, hunter.match);
+            compassTaskTime.record(System.nanoTime() - start);
+            if (hud != null) hud.update(p, hunter, nearest);
+
+            AbilityMenu menu = hunter.menu;
+            if (menu != null && menu.isViewed()) menu.refresh(hunter, settings.abilities);
+        }, null));
+    }
+
+    // every tick on the runner's thread: sample them for everyone else, poll mines in timer mode
+    private void startRunnerTask(Player p, Match match) {
+        UUID id = p.getUniqueId();
+        RunnerTracker.Snapshot snapshot = new RunnerTracker.Snapshot(p);
+        replacePlayerTask(id, scheduling.timer(p, 1L, 1L, () -> {
+            if (!match.runners.contains(id)) return;
+            // replaces the stand-in MatchSync kept while they were on another backend
+            if (match.runnerSnapshots.get(id) != snapshot) match.runnerSnapshots.put(id, snapshot);
+            Location at = runnerTracker.sample(match, snapshot);
+            if (settings.mineTriggerMode == Settings.MineTriggerMode.TIMER && snapshot.samples() % Match.MINE_POLL_TICKS == 0) {
+                long start = System.nanoTime();
+                sweepMines(match, p, at);
+                mineCheckTime.record(System.nanoTime() - start);
             }
-        }.runTaskTimer(this, 5L, 5L);
+        }, null));
+    }
+
+    private void replacePlayerTask(UUID id, ScheduledTask task) {
+        ScheduledTask old = playerTasks.put(id, task);
+        if (old != null) old.cancel();
+    }
+
+    private void stopPlayerTask(UUID id) {
+        ScheduledTask old = playerTasks.remove(id);
+        if (old != null) old.cancel();
+    }
+
+    // ------------------------------------------------------------------ //
+    // MINES CHECK
+    // ------------------------------------------------------------------ //
+
+    // both modes: walk the cells from the last checked point to where the
+    // runner is now (move mode on each block change, timer mode every few ticks)
+    private void sweepMines(Match match, Player runner, Location to) {
+        List<MineIndex.Mine> triggered = match.sweepMines(runner.getUniqueId(), to, settings.maxMineSweep, System.currentTimeMillis());
+        if (!triggered.isEmpty()) fireTriggeredMines(match, runner, triggered);
+    }
+
+    private void fireTriggeredMines(Match match, Player runner, List<MineIndex.Mine> triggeredMines) {
+        for (int i = 0; i < triggeredMines.size(); i++) {
+            MineIndex.Mine mine = triggeredMines.get(i);
+            Location at = mine.location(runner.getWorld());
+            record(match, Recorder.MINE_TRIGGER, 0, 0f, runner.getUniqueId(), mine.ownerId, at);
+            feedback.sound(match, at.getWorld(), at.getX(), at.getY(), at.getZ(), Sound.ENTITY_CREEPER_PRIMED, 1f, 1.2f);
+            runner.addPotionEffect(effects.mineSlowness);
+            runner.damage(2.0);
+        }
+        if (!triggeredMines.isEmpty()) store.markDirty();
+        triggeredMines.clear();
     }
 
     // ------------------------------------------------------------------ //
@@ -237,15 +534,74 @@ public class PlayerControlledRobotHunterPlugin extends JavaPlugin implements Lis
         }
 
         if (args.length == 0) {
-            sender.sendMessage(ChatColor.YELLOW + "Usage: /robothunter <sethunter|setrunner|start|stop|clearhunters|abilities>");
+            sender.sendMessage(ChatColor.YELLOW + "Usage: /robothunter <sethunter|setrunner|start|stop|clearhunters|abilities|matches|metrics|reload> [match]");
             return true;
         }
 
-        // /robothunter sethunter [player]
-        if (args[0].equalsIgnoreCase("sethunter")) {
+        String sub = args[0].toLowerCase(Locale.ROOT);
+
+        // /robothunter abilities
+        if (sub.equals("abilities")) {
+            if (!(sender instanceof Player)) {
+                sender.sendMessage(ChatColor.RED + "Only players can use abilities.");
+                return true;
+            }
+            Player p = (Player) sender;
+            HunterState hunter = hunters.get(p.getUniqueId());
+            if (hunter == null) {
+                p.sendMessage(ChatColor.RED + "You are not a robot hunter.");
+                return true;
+            }
+            hunter.pendingAbility = null;
+            openAbilityGui(p, hunter);
+            return true;
+        }
+
+        // /robothunter matches
+        if (sub.equals("matches")) {
+            if (matches.isEmpty()) {
+                sender.sendMessage(ChatColor.GRAY + "No matches.");
+                return true;
+            }
+            for (Match match : matches.values()) {
+                sender.sendMessage(ChatColor.AQUA + match.id + ChatColor.GRAY + ": "
+                        + match.runners.size() + " runner(s), " + match.hunters.size() + " hunter(s), "
+                        + match.mines.size() + " mine(s), "
+                        + (match.isRunning() ? ChatColor.GREEN + "running " + match.getElapsedSeconds() + "s" : ChatColor.YELLOW + "idle"));
+            }
+            sender.sendMessage(ChatColor.GRAY + "Pending ability timers: " + timers.pending());
+            return true;
+        }
+
+        // /robothunter reload
+        if (sub.equals("reload")) {
+            sender.sendMessage(ChatColor.GRAY + "Reloading RobotHunter config...");
+            reloadSettings(sender);
+            return true;
+        }
+
+        // /robothunter metrics
+        if (sub.equals("metrics")) {
+            sender.sendMessage(ChatColor.AQUA + "RobotHunter metrics:");
+            for (String line : metrics.summary()) {
+                sender.sendMessage(ChatColor.GRAY + line);
+            }
+            return true;
+        }
+
+        // everything below takes a match id; sethunter/setrunner have the player first
+        int matchIndex = sub.equals("sethunter") || sub.equals("setrunner") ? 2 : 1;
+        String matchId = matchArg(args, matchIndex);
+        if (!Match.isValidId(matchId)) {
+            sender.sendMessage(ChatColor.RED + "Invalid match id (a-z, 0-9, _ and -, max 32).");
+            return true;
+        }
+
+        // /robothunter sethunter [player] [match]
+        if (sub.equals("sethunter")) {
             Player target;
             if (!(sender instanceof Player) && args.length < 2) {
-                sender.sendMessage(ChatColor.RED + "Console: /robothunter sethunter <player>");
+                sender.sendMessage(ChatColor.RED + "Console: /robothunter sethunter <player> [match]");
                 return true;
             }
             if (args.length >= 2) target = Bukkit.getPlayer(args[1]);
@@ -255,15 +611,17 @@ public class PlayerControlledRobotHunterPlugin extends JavaPlugin implements Lis
                 sender.sendMessage(ChatColor.RED + "Player not found.");
                 return true;
             }
-            setHunter(target);
-            sender.sendMessage(ChatColor.GREEN + "Set " + target.getName() + " as Robot Hunter.");
+            Match match = getOrCreateMatch(matchId);
+            setHunter(target, match);
+            if (sync != null) sync.joined(match, target.getUniqueId(), true);
+            sender.sendMessage(ChatColor.GREEN + "Set " + target.getName() + " as Robot Hunter in match " + matchId + ".");
             return true;
         }
 
-        // /robothunter setrunner <player>
-        if (args[0].equalsIgnoreCase("setrunner")) {
+        // /robothunter setrunner <player> [match]
+        if (sub.equals("setrunner")) {
             if (args.length < 2) {
-                sender.sendMessage(ChatColor.YELLOW + "Usage: /robothunter setrunner <player>");
+                sender.sendMessage(ChatColor.YELLOW + "Usage: /robothunter setrunner <player> [match]");
                 return true;
             }
             Player target = Bukkit.getPlayer(args[1]);
@@ -271,54 +629,55 @@ public class PlayerControlledRobotHunterPlugin extends JavaPlugin implements Lis
                 sender.sendMessage(ChatColor.RED + "Runner player not found.");
                 return true;
             }
-            runnerId = target.getUniqueId();
-            sender.sendMessage(ChatColor.AQUA + "Runner set to " + target.getName() + ".");
+            Match match = getOrCreateMatch(matchId);
+            setRunner(target, match);
+            if (sync != null) sync.joined(match, target.getUniqueId(), false);
+            sender.sendMessage(ChatColor.AQUA + "Added runner " + target.getName() + " to match " + matchId + ".");
             return true;
         }
 
-        // /robothunter start  -> start the run
-        if (args[0].equalsIgnoreCase("start")) {
-            gameStartTime = System.currentTimeMillis();
-            usedAbilities.clear();
-            pendingAbility.clear();
-            sender.sendMessage(ChatColor.GREEN + "Robot Hunter run started!");
-            Bukkit.broadcastMessage(ChatColor.RED + "[RobotHunter] Run has started!");
+        // /robothunter start [match]  -> start the run
+        if (sub.equals("start")) {
+            long startedAt = System.currentTimeMillis();
+            // the run clock is only touched on the global thread, where
+            // starts and stops from other backends are applied too
+            scheduling.global(() -> {
+                Match match = getOrCreateMatch(matchId);
+                startRun(match, startedAt);
+                publishClock(match);
+                reply(sender, ChatColor.GREEN + "Robot Hunter run started! (" + matchId + ")");
+            });
             return true;
         }
 
-        // /robothunter stop -> stop the run
-        if (args[0].equalsIgnoreCase("stop")) {
-            gameStartTime = -1L;
-            usedAbilities.clear();
-            pendingAbility.clear();
-            overdriveActive.clear();
-            shieldActive.clear();
-            cameraMode.clear();
-            sender.sendMessage(ChatColor.YELLOW + "Robot Hunter run stopped.");
-            Bukkit.broadcastMessage(ChatColor.RED + "[RobotHunter] The run has ended.");
+        Match match = matches.get(matchId);
+        if (match == null) {
+            sender.sendMessage(ChatColor.RED + "No match named " + matchId + ".");
             return true;
         }
 
-        // /robothunter clearhunters
-        if (args[0].equalsIgnoreCase("clearhunters")) {
-            clearAllHunters();
-            sender.sendMessage(ChatColor.YELLOW + "Cleared all robot hunters.");
+        // /robothunter stop [match] -> stop the run
+        if (sub.equals("stop")) {
+            scheduling.global(() -> {
+                stopRun(match);
+                publishClock(match);
+                reply(sender, ChatColor.YELLOW + "Robot Hunter run stopped. (" + matchId + ")");
+            });
             return true;
         }
 
-        // /robothunter abilities
-        if (args[0].equalsIgnoreCase("abilities")) {
-            if (!(sender instanceof Player)) {
-                sender.sendMessage(ChatColor.RED + "Only players can use abilities.");
-                return true;
-            }
-            Player p = (Player) sender;
-            if (!hunters.contains(p.getUniqueId())) {
-                p.sendMessage(ChatColor.RED + "You are not a robot hunter.");
-                return true;
-            }
-            pendingAbility.remove(p.getUniqueId());
-            openAbilityGui(p);
+        // /robothunter clearhunters [match]
+        if (sub.equals("clearhunters")) {
+            scheduling.global(() -> {
+                if (sync != null) {
+                    for (UUID id : match.hunters.keySet()) {
+                        sync.left(match, id);
+                    }
+                }
+                clearAllHunters(match);
+                publishClock(match);
+                reply(sender, ChatColor.YELLOW + "Cleared all robot hunters. (" + matchId + ")");
+            });
             return true;
         }
 
@@ -326,442 +685,384 @@ public class PlayerControlledRobotHunterPlugin extends JavaPlugin implements Lis
         return true;
     }
 
-    private void setHunter(Player p) {
-        UUID id = p.getUniqueId();
-        hunters.add(id);
-
-        hunterSpawn.put(id, p.getLocation().clone());
-
-        // base robot effect: always slow
-        p.addPotionEffect(new PotionEffect(effect("SLOWNESS"), Integer.MAX_VALUE, 0, false, false, false));
-        p.sendTitle(ChatColor.RED + "ROBOT ONLINE", ChatColor.GRAY + "You are the hunter.", 10, 40, 10);
-        p.sendMessage(ChatColor.AQUA + "You are now the Robot Hunter!");
+    // takes the player out of whatever match they're in now
+    private void leaveMatch(Player p) {
+        leaveMatch(p.getUniqueId(), p);
     }
 
-    private void clearAllHunters() {
-        for (UUID id : new HashSet<>(hunters)) {
-            Player p = Bukkit.getPlayer(id);
-            if (p != null) {
-                p.removePotionEffect(effect("SLOWNESS"));
-                p.removePotionEffect(effect("SPEED"));
-                p.removePotionEffect(effect("NIGHT_VISION"));
-                p.removePotionEffect(effect("DAMAGE_RESISTANCE"));
-            }
+    // p is null for a player who isn't on this backend
+    private void leaveMatch(UUID id, Player p) {
+        Match match = playerMatch.remove(id);
+        if (match == null) return;
+
+        stopPlayerTask(id);
+        timers.cancelOwner(id);
+        if (hunters.remove(id) != null) {
+            if (p != null) scheduling.run(p, () -> stripRobotEffects(p));
+            match.hunters.remove(id);
+            compassTracker.forget(id);
+            if (hud != null) hud.remove(id);
         }
-        hunters.clear();
-        lastAttackTime.clear();
-        cameraMode.clear();
-        overdriveActive.clear();
-        shieldActive.clear();
-        usedAbilities.clear();
-        pendingAbility.clear();
-        gameStartTime = -1L;
+        match.removeRunner(id);
+        dropMatchIfEmpty(match);
+        store.markDirty();
     }
 
-    // ------------------------------------------------------------------ //
-    // ABILITY STATE HELPERS
-    // ------------------------------------------------------------------ //
+    private void setHunter(Player p, Match match) {
+        UUID id = p.getUniqueId();
+        HunterState current = hunters.get(id);
+        if (current == null || current.match != match) {
+            leaveMatch(p);
+            current = null;
+        }
+        HunterState hunter = current != null ? current : new HunterState(id, match);
+        hunters.put(id, hunter);
+        match.hunters.put(id, hunter);
+        playerMatch.put(id, match);
+        startHunterTask(p, hunter);
+
+        store.markDirty();
+
+        scheduling.run(p, () -> {
+            hunter.spawn = p.getLocation().clone();
+            store.markDirty();
+
+            // base robot effect: always slow
+            p.addPotionEffect(effects.baseSlowness);
+            if (core != null) core.give(p);
+            p.sendTitle(ChatColor.RED + "ROBOT ONLINE", ChatColor.GRAY + "You are the hunter.", 10, 40, 10);
+            p.sendMessage(ChatColor.AQUA + "You are now the Robot Hunter!");
+        });
+    }
 
-    private long getElapsedSeconds() {
-        if (gameStartTime <= 0) return 0;
-        return (System.currentTimeMillis() - gameStartTime) / 1000L;
+    // a sethunter / setrunner on another backend. someone playing here goes
+    // through the normal path; anyone else is only recorded, so resumePlayer
+    // picks them up if they move to this backend
+    private void joinFromRemote(Match match, UUID id, boolean hunter) {
+        Player p = Bukkit.getPlayer(id);
+        HunterState current = hunters.get(id);
+        if (hunter ? current != null && current.match == match : playerMatch.get(id) == match && match.runners.contains(id)) return;
+        if (p != null) {
+            if (hunter) setHunter(p, match);
+            else setRunner(p, match);
+            return;
+        }
+        leaveMatch(id, null);
+        if (hunter) {
+            HunterState state = new HunterState(id, match);
+            hunters.put(id, state);
+            match.hunters.put(id, state);
+        } else {
+            match.runners.add(id);
+        }
+        playerMatch.put(id, match);
+        store.markDirty();
     }
 
-    private boolean hasUsedAbility(UUID hunterId, Ability ability) {
-        EnumSet<Ability> set = usedAbilities.get(hunterId);
-        return set != null && set.contains(ability);
+    private void setRunner(Player p, Match match) {
+        UUID id = p.getUniqueId();
+        if (playerMatch.get(id) != match || !match.runners.contains(id)) {
+            leaveMatch(p);
+        }
+        match.runners.add(id);
+        playerMatch.put(id, match);
+        startRunnerTask(p, match);
+        store.markDirty();
     }
 
-    private void markAbilityUsed(UUID hunterId, Ability ability) {
-        usedAbilities.computeIfAbsent(hunterId, k -> EnumSet.noneOf(Ability.class)).add(ability);
+    private void stripRobotEffects(Player p) {
+        p.removePotionEffect(effects.slowness);
+        p.removePotionEffect(effects.speed);
+        p.removePotionEffect(effects.nightVision);
+        p.removePotionEffect(effects.resistance);
+        if (core != null) core.strip(p);
     }
 
-    private Ability getAbilityByDisplayName(String name) {
-        for (Ability a : Ability.values()) {
-            if (a.displayName.equals(name)) return a;
+    private void clearAllHunters(Match match) {
+        for (UUID id : match.hunters.keySet()) {
+            // restores first, so the strip below comes after them
+            timers.cancelOwner(id);
+            Player p = Bukkit.getPlayer(id);
+            if (p != null) {
+                scheduling.run(p, () -> stripRobotEffects(p));
+            }
+            stopPlayerTask(id);
+            hunters.remove(id);
+            playerMatch.remove(id);
+            compassTracker.forget(id);
+            if (hud != null) hud.remove(id);
         }
-        return null;
+        match.hunters.clear();
+        match.gameStartTime = -1L;
+        endRecording(match);
+        dropMatchIfEmpty(match);
+        store.markDirty();
     }
 
     // ------------------------------------------------------------------ //
     // ABILITY GUI
     // ------------------------------------------------------------------ //
 
-    private void openAbilityGui(Player p) {
-        Inventory inv = Bukkit.createInventory(p, 9, ABILITY_GUI_TITLE);
-
-        long elapsed = getElapsedSeconds();
-        UUID hunterId = p.getUniqueId();
-
-        Ability[] abilities = Ability.values();
-        for (int i = 0; i < abilities.length && i < inv.getSize(); i++) {
-            Ability ability = abilities[i];
-            ItemStack item = new ItemStack(ability.icon);
-            ItemMeta meta = item.getItemMeta();
-            if (meta != null) {
-                meta.setDisplayName(ability.displayName);
-                List<String> lore = new ArrayList<>();
-                int unlock = abilityUnlockSeconds.getOrDefault(ability, ability.defaultUnlockSeconds);
-
-                if (gameStartTime <= 0) {
-                    lore.add(ChatColor.RED + "Run has not started yet.");
-                    lore.add(ChatColor.GRAY + "Use /robothunter start");
-                } else if (elapsed < unlock) {
-                    long remainingUnlock = unlock - elapsed;
-                    lore.add(ChatColor.RED + "Locked: " + remainingUnlock + "s until unlock");
-                } else if (hasUsedAbility(hunterId, ability)) {
-                    lore.add(ChatColor.DARK_GRAY + "Already used (one-time)");
-                } else {
-                    lore.add(ChatColor.GREEN + "Ready!");
-                    lore.add(ChatColor.GRAY + "One-time use only.");
-                    if (pendingAbility.get(hunterId) == ability) {
-                        lore.add(ChatColor.AQUA + "Selected: will fire on close");
-                    }
-                }
-
-                meta.setLore(lore);
-                item.setItemMeta(meta);
-            }
-            inv.setItem(i, item);
+    private void openAbilityGui(Player p, HunterState hunter) {
+        AbilityMenu menu = hunter.menu;
+        if (menu == null) {
+            menu = new AbilityMenu();
+            hunter.menu = menu;
         }
-
-        p.openInventory(inv);
+        menu.refresh(hunter, settings.abilities);
+        p.openInventory(menu.inventory);
     }
 
-    // click: just select ability, don’t trigger yet
     @EventHandler
     public void onInventoryClick(InventoryClickEvent e) {
+        long start = System.nanoTime();
+        handleInventoryClick(e);
+        clickEventTime.record(System.nanoTime() - start);
+    }
+
+    // click: just select ability, don’t trigger yet. every click on the
+    // server comes through here, so the hunter lookup goes before the holder
+    // and the holder is never snapshotted (block inventories would copy state)
+    private void handleInventoryClick(InventoryClickEvent e) {
+        HunterState hunter = hunters.get(e.getWhoClicked().getUniqueId());
+        if (hunter == null) return;
         if (!(e.getWhoClicked() instanceof Player)) return;
+        InventoryHolder holder = e.getInventory().getHolder(false);
+        if (!(holder instanceof AbilityMenu)) return;
         Player p = (Player) e.getWhoClicked();
-        if (!hunters.contains(p.getUniqueId())) return;
-        if (!e.getView().getTitle().equals(ABILITY_GUI_TITLE)) return;
 
         e.setCancelled(true);
-        ItemStack clicked = e.getCurrentItem();
-        if (clicked == null || !clicked.hasItemMeta()) return;
-        ItemMeta meta = clicked.getItemMeta();
-        if (meta == null || meta.getDisplayName() == null) return;
-
-        Ability selected = getAbilityByDisplayName(meta.getDisplayName());
+        AbilityMenu menu = (AbilityMenu) holder;
+        Ability selected = menu.abilityAt(e.getRawSlot());
         if (selected != null) {
-            pendingAbility.put(p.getUniqueId(), selected);
+            hunter.pendingAbility = selected;
             p.sendMessage(ChatColor.GREEN + "Selected: " + selected.displayName +
                     ChatColor.GRAY + " (ability will trigger when you close the menu)");
-            // refresh GUI so lore shows “selected”
-            openAbilityGui(p);
+            // redraw in place so lore shows “selected” (reopening would fire the close handler)
+            menu.refresh(hunter, settings.abilities);
         }
     }
 
     // when GUI closes, actually trigger selected ability
     @EventHandler
     public void onInventoryClose(InventoryCloseEvent e) {
+        HunterState hunter = hunters.get(e.getPlayer().getUniqueId());
+        if (hunter == null) return;
+        if (!(e.getInventory().getHolder(false) instanceof AbilityMenu)) return;
         if (!(e.getPlayer() instanceof Player)) return;
         Player p = (Player) e.getPlayer();
-        if (!hunters.contains(p.getUniqueId())) return;
-        if (!e.getView().getTitle().equals(ABILITY_GUI_TITLE)) return;
 
-        UUID id = p.getUniqueId();
-        Ability selected = pendingAbility.remove(id);
+        Ability selected = hunter.pendingAbility;
         if (selected == null) return; // nothing picked
+        hunter.pendingAbility = null;
+        triggerAbility(p, hunter, selected);
+    }
 
-        long elapsed = getElapsedSeconds();
-        int unlock = abilityUnlockSeconds.getOrDefault(selected, selected.defaultUnlockSeconds);
-
-        if (gameStartTime <= 0) {
-            p.sendMessage(ChatColor.RED + "The run hasn’t started yet. Use /robothunter start.");
-            return;
-        }
-
-        if (elapsed < unlock) {
-            long remaining = unlock - elapsed;
-            p.sendMessage(ChatColor.RED + "Ability locked for " + remaining + " more seconds.");
-            return;
-        }
+    // shared by the menu and the ability core; on the hunter's thread
+    private void triggerAbility(Player p, HunterState hunter, Ability selected) {
+        Match match = hunter.match;
+        AbilityDefinition def = settings.abilities[selected.ordinal()];
+        long now = System.currentTimeMillis();
 
-        if (hasUsedAbility(id, selected)) {
-            p.sendMessage(ChatColor.RED + "You already used this ability (one-time only).");
-            return;
+        switch (hunter.checkCast(def, now)) {
+            case NOT_RUNNING:
+                p.sendMessage(ChatColor.RED + "The run hasn’t started yet. Use /robothunter start.");
+                return;
+            case LOCKED:
+                long remaining = def.unlockSeconds - match.getElapsedSeconds();
+                p.sendMessage(ChatColor.RED + "Ability locked for " + remaining + " more seconds.");
+                return;
+            case USED:
+                p.sendMessage(ChatColor.RED + "You already used this ability (one-time only).");
+                return;
+            case COOLING_DOWN:
+                long readyAt = hunter.readyAt(selected);
+                p.sendMessage(ChatColor.RED + "Ability on cooldown for " + (readyAt - now + 999L) / 1000L + " more seconds.");
+                return;
+            default:
+                break;
         }
 
-        if (triggerAbility(p, selected)) {
-            markAbilityUsed(id, selected);
+        if (abilityEngine.activate(def, p, hunter, now)) {
+            store.markDirty();
+            record(match, Recorder.ABILITY, selected.ordinal(), 0f, hunter.id, null, p.getLocation());
+            abilityActivations[selected.ordinal()].increment();
         }
     }
 
-    // ------------------------------------------------------------------ //
-    // ABILITY LOGIC
-    // ------------------------------------------------------------------ //
-
-    private boolean triggerAbility(Player hunter, Ability ability) {
-        UUID hunterId = hunter.getUniqueId();
-        Location loc = hunter.getLocation();
-
-        switch (ability) {
-            case SPEED_OVERDRIVE:
-                overdriveActive.add(hunterId);
-                hunter.removePotionEffect(effect("SLOWNESS"));
-                hunter.addPotionEffect(new PotionEffect(effect("SPEED"), 20 * 5, 1, false, true, true));
-                hunter.sendTitle(ChatColor.GREEN + "OVERDRIVE", ChatColor.GRAY + "Temporary speed boost!", 5, 40, 10);
-                hunter.getWorld().playSound(loc, Sound.BLOCK_BEACON_POWER_SELECT, 1f, 1.2f);
-                new BukkitRunnable() {
-                    @Override
-                    public void run() {
-                        overdriveActive.remove(hunterId);
-                        hunter.removePotionEffect(effect("SPEED"));
-                        hunter.addPotionEffect(new PotionEffect(effect("SLOWNESS"), Integer.MAX_VALUE, 0, false, false, false));
-                    }
-                }.runTaskLater(this, 20L * 5);
-                return true;
-
-            case ROCKET_JUMP:
-                hunter.setVelocity(hunter.getVelocity().setY(1.0));
-                hunter.getWorld().playSound(loc, Sound.ENTITY_FIREWORK_ROCKET_LAUNCH, 1f, 1f);
-                hunter.sendTitle(ChatColor.AQUA + "ROCKET JUMP", ChatColor.GRAY + "Up you go!", 5, 20, 10);
-                return true;
-
-            case ZOOM_MODE:
-                hunter.addPotionEffect(new PotionEffect(effect("SLOWNESS"), 20 * 4, 3, false, false, false));
-                hunter.addPotionEffect(new PotionEffect(effect("NIGHT_VISION"), 20 * 4, 0, false, false, false));
-                hunter.sendTitle(ChatColor.YELLOW + "ZOOM MODE", ChatColor.GRAY + "Line up your shot...", 5, 40, 10);
-                hunter.getWorld().playSound(loc, Sound.ITEM_SPYGLASS_USE, 1f, 1f);
-                return true;
-
-            case SONAR_SCAN:
-                if (runnerId != null) {
-                    Player runner = Bukkit.getPlayer(runnerId);
-                    if (runner != null && runner.isOnline()) {
-                        runner.addPotionEffect(new PotionEffect(effect("GLOWING"), 20 * 5, 0, false, false, true));
-                        hunter.sendTitle(ChatColor.BLUE + "SONAR PING", ChatColor.GRAY + "Runner detected!", 5, 40, 10);
-                        hunter.getWorld().playSound(loc, Sound.BLOCK_NOTE_BLOCK_PLING, 1f, 0.5f);
-                    } else {
-                        hunter.sendMessage(ChatColor.RED + "Runner not online.");
-                        return false;
-                    }
-                } else {
-                    hunter.sendMessage(ChatColor.RED + "No runner set.");
-                    return false;
-                }
-                return true;
-
-            case MINES:
-                for (int i = 0; i < 3; i++) {
-                    double dx = (Math.random() - 0.5) * 3.0;
-                    double dz = (Math.random() - 0.5) * 3.0;
-                    Location mLoc = loc.clone().add(dx, 0, dz);
-                    mLoc.setY(loc.getY());
-                    mines.add(new Mine(mLoc, hunterId));
-                }
-                hunter.getWorld().playSound(loc, Sound.BLOCK_PISTON_EXTEND, 1f, 0.8f);
-                hunter.sendTitle(ChatColor.GOLD + "MINES DEPLOYED", ChatColor.GRAY + "Careful where they step...", 5, 40, 10);
-                return true;
-
-            case SHIELD:
-                shieldActive.add(hunterId);
-                hunter.addPotionEffect(new PotionEffect(effect("DAMAGE_RESISTANCE"), 20 * 5, 1, false, true, true));
-                hunter.sendTitle(ChatColor.DARK_AQUA + "SHIELD ONLINE", ChatColor.GRAY + "Damage reduced.", 5, 40, 10);
-                hunter.getWorld().playSound(loc, Sound.ITEM_SHIELD_BLOCK, 1f, 0.8f);
-                new BukkitRunnable() {
-                    @Override
-                    public void run() {
-                        shieldActive.remove(hunterId);
-                        hunter.removePotionEffect(effect("DAMAGE_RESISTANCE"));
-                    }
-                }.runTaskLater(this, 20L * 5);
-                return true;
+    @EventHandler
+    public void onCoreInteract(PlayerInteractEvent e) {
+        if (core == null) return;
+        long start = System.nanoTime();
+        handleCoreInteract(e);
+        interactEventTime.record(System.nanoTime() - start);
+    }
 
-            case SECURITY_CAMERA:
-                if (cameraMode.contains(hunterId)) {
-                    hunter.sendMessage(ChatColor.RED + "Already in camera mode.");
-                    return false;
-                }
-                cameraMode.add(hunterId);
-                Location originalLoc = hunter.getLocation().clone();
-                Location camLoc = originalLoc.clone().add(0, 15, 0);
-                hunter.teleport(camLoc);
-                hunter.setAllowFlight(true);
-                hunter.setFlying(true);
-                hunter.sendTitle(ChatColor.DARK_GREEN + "SECURITY CAMERA", ChatColor.GRAY + "Scanning area...", 10, 40, 10);
-                hunter.getWorld().playSound(camLoc, Sound.BLOCK_BEACON_ACTIVATE, 1f, 1.2f);
-
-                new BukkitRunnable() {
-                    @Override
-                    public void run() {
-                        if (!hunter.isOnline()) {
-                            cameraMode.remove(hunterId);
-                            return;
-                        }
-                        hunter.teleport(originalLoc);
-                        hunter.setFlying(false);
-                        cameraMode.remove(hunterId);
-                        hunter.sendMessage(ChatColor.GRAY + "Exited camera mode.");
-                    }
-                }.runTaskLater(this, 20L * 5);
-                return true;
+    // right-click casts the core's ability straight away, sneak + right-click
+    // moves it on to the next unlocked one. only a hunter's click is taken
+    // over; anyone else holding a core item uses it as a normal item
+    private void handleCoreInteract(PlayerInteractEvent e) {
+        if (e.getHand() != EquipmentSlot.HAND || !e.getAction().isRightClick()) return;
+        Player p = e.getPlayer();
+        HunterState hunter = hunters.get(p.getUniqueId());
+        if (hunter == null) return;
+        Ability bound = core.abilityOf(e.getItem());
+        if (bound == null) return;
+        e.setCancelled(true);
 
-            case GRAPPLE:
-                if (runnerId != null) {
-                    Player runner = Bukkit.getPlayer(runnerId);
-                    if (runner != null && runner.isOnline() && runner.getWorld().equals(loc.getWorld())) {
-                        double dist = runner.getLocation().distance(loc);
-                        if (dist <= 30) {
-                            Location rLoc = runner.getLocation();
-                            org.bukkit.util.Vector v = loc.toVector().subtract(rLoc.toVector()).normalize().multiply(1.2);
-                            v.setY(0.4);
-                            runner.setVelocity(v);
-                            runner.getWorld().playSound(rLoc, Sound.ENTITY_FISHING_BOBBER_RETRIEVE, 1f, 1f);
-                            hunter.sendTitle(ChatColor.DARK_PURPLE + "GRAPPLE", ChatColor.GRAY + "Get over here!", 5, 40, 10);
-                        } else {
-                            hunter.sendMessage(ChatColor.RED + "Runner too far for grapple (max 30 blocks).");
-                            return false;
-                        }
-                    } else {
-                        hunter.sendMessage(ChatColor.RED + "Runner not online.");
-                        return false;
-                    }
-                } else {
-                    hunter.sendMessage(ChatColor.RED + "No runner set.");
-                    return false;
-                }
-                return true;
+        if (p.isSneaking()) {
+            Match match = hunter.match;
+            Ability next = AbilityCore.next(bound, match.isRunning(), match.getElapsedSeconds(), settings.unlockSeconds);
+            if (next != bound) core.bind(e.getItem(), next);
+            p.sendActionBar(ChatColor.GRAY + "Core: " + next.displayName);
+            return;
+        }
+        triggerAbility(p, hunter, bound);
+    }
 
-            case DRONE_STRIKE:
-                if (runnerId != null) {
-                    Player runner = Bukkit.getPlayer(runnerId);
-                    if (runner != null && runner.isOnline()) {
-                        Location target = runner.getLocation().clone();
-                        target.getWorld().playSound(target, Sound.ENTITY_PHANTOM_SWOOP, 1f, 0.5f);
-                        hunter.sendTitle(ChatColor.RED + "DRONE STRIKE", ChatColor.GRAY + "Incoming!", 10, 40, 10);
-                        new BukkitRunnable() {
-                            @Override
-                            public void run() {
-                                target.getWorld().playSound(target, Sound.ENTITY_GENERIC_EXPLODE, 1f, 1f);
-                                target.getWorld().createExplosion(target.getX(), target.getY(), target.getZ(), 1.5f, false, false);
-                            }
-                        }.runTaskLater(this, 20L * 2);
-                    } else {
-                        hunter.sendMessage(ChatColor.RED + "Runner not online.");
-                        return false;
-                    }
-                } else {
-                    hunter.sendMessage(ChatColor.RED + "No runner set.");
-                    return false;
-                }
-                return true;
+    @EventHandler
+    public void onCoreDrop(PlayerDropItemEvent e) {
+        if (core != null && core.isCore(e.getItemDrop().getItemStack())) e.setCancelled(true);
+    }
 
-            case THERMAL_VISION:
-                hunter.addPotionEffect(new PotionEffect(effect("NIGHT_VISION"), 20 * 8, 0, false, false, false));
-                if (runnerId != null) {
-                    Player runner = Bukkit.getPlayer(runnerId);
-                    if (runner != null && runner.isOnline()) {
-                        runner.addPotionEffect(new PotionEffect(effect("GLOWING"), 20 * 8, 0, false, false, true));
-                    }
-                }
-                hunter.sendTitle(ChatColor.LIGHT_PURPLE + "THERMAL VISION", ChatColor.GRAY + "Targets highlighted.", 10, 40, 10);
-                hunter.getWorld().playSound(loc, Sound.BLOCK_SCULK_SENSOR_CLICKING, 1f, 1f);
-                return true;
-        }
-        return false;
+    @EventHandler
+    public void onHunterDeath(PlayerDeathEvent e) {
+        if (core != null && hunters.containsKey(e.getEntity().getUniqueId())) core.removeFrom(e.getDrops());
     }
 
     // ------------------------------------------------------------------ //
     // EVENTS
     // ------------------------------------------------------------------ //
 
-    // keep hunter always full food & no hunger
     @EventHandler
     public void onFoodChange(FoodLevelChangeEvent e) {
+        long start = System.nanoTime();
+        handleFoodChange(e);
+        foodEventTime.record(System.nanoTime() - start);
+    }
+
+    // keep hunter always full food & no hunger
+    private void handleFoodChange(FoodLevelChangeEvent e) {
         if (!(e.getEntity() instanceof Player)) return;
         Player p = (Player) e.getEntity();
-        if (!hunters.contains(p.getUniqueId())) return;
+        if (!hunters.containsKey(p.getUniqueId())) return;
 
         e.setCancelled(true);
         p.setFoodLevel(20);
         p.setSaturation(20f);
     }
 
-    // buff hunter melee a bit + cooldown
     @EventHandler
     public void onHunterAttack(EntityDamageByEntityEvent e) {
+        long start = System.nanoTime();
+        handleHunterAttack(e);
+        attackEventTime.record(System.nanoTime() - start);
+    }
+
+    // buff hunter melee by weapon + per-weapon cooldown
+    private void handleHunterAttack(EntityDamageByEntityEvent e) {
         if (!(e.getDamager() instanceof Player)) return;
         Player hunter = (Player) e.getDamager();
-        if (!hunters.contains(hunter.getUniqueId())) return;
+        HunterState state = hunters.get(hunter.getUniqueId());
+        if (state == null) return;
 
-        if (e.getEntity() instanceof Player && hunters.contains(((Player) e.getEntity()).getUniqueId())) {
+        if (e.getEntity() instanceof Player && state.match.hunters.containsKey(e.getEntity().getUniqueId())) {
             return;
         }
 
-        long now = System.currentTimeMillis();
-        long last = lastAttackTime.getOrDefault(hunter.getUniqueId(), 0L);
-        if (now - last < ATTACK_COOLDOWN_MS) {
+        WeaponTable weapons = settings.weapons;
+        Material weapon = WeaponTable.held(hunter);
+        if (!weapons.swing(state, weapon, System.currentTimeMillis())) {
             e.setCancelled(true);
             return;
         }
-        lastAttackTime.put(hunter.getUniqueId(), now);
-
-        double damage = e.getDamage();
-        ItemStack weapon = hunter.getInventory().getItemInMainHand();
-        if (weapon != null) {
-            String name = weapon.getType().name();
-            if (name.contains("WOODEN_SWORD")) damage += 2.0;
-            else if (name.contains("STONE_SWORD")) damage += 2.5;
-            else if (name.contains("IRON_SWORD")) damage += 3.0;
-            else if (name.contains("DIAMOND_SWORD")) damage += 3.5;
-            else damage += 1.0;
-        } else {
-            damage += 1.0;
-        }
 
-        e.setDamage(damage);
+        e.setDamage(e.getDamage() + weapons.bonus(weapon));
+        record(state.match, Recorder.HIT, 0, (float) e.getDamage(), state.id, e.getEntity().getUniqueId(), e.getEntity().getLocation());
         hunter.playSound(hunter.getLocation(), Sound.ENTITY_PLAYER_ATTACK_STRONG, 1f, 1f);
     }
 
+    // move-mode mine trigger, only once a runner steps into a new block
+    @EventHandler(ignoreCancelled = true)
+    public void onRunnerMove(PlayerMoveEvent e) {
+        if (settings.mineTriggerMode != Settings.MineTriggerMode.MOVE) return;
+        if (!e.hasChangedBlockPosition()) return;
+        long start = System.nanoTime();
+        Player p = e.getPlayer();
+        Match match = playerMatch.get(p.getUniqueId());
+        if (match != null && match.runners.contains(p.getUniqueId())) {
+            sweepMines(match, p, e.getTo());
+            mineCheckTime.record(System.nanoTime() - start);
+        }
+        moveEventTime.record(System.nanoTime() - start);
+    }
+
     // reapply robot effects after death
     @EventHandler
     public void onPlayerRespawn(PlayerRespawnEvent e) {
         Player p = e.getPlayer();
         UUID id = p.getUniqueId();
-        if (!hunters.contains(id)) return;
+        HunterState hunter = hunters.get(id);
+        if (hunter == null) return;
 
-        Location spawn = hunterSpawn.get(id);
+        Location spawn = hunter.spawn;
         if (spawn != null) {
             e.setRespawnLocation(spawn);
         }
 
-        new BukkitRunnable() {
-            @Override
-            public void run() {
-                p.removePotionEffect(effect("SPEED"));
-                p.removePotionEffect(effect("NIGHT_VISION"));
-                p.removePotionEffect(effect("DAMAGE_RESISTANCE"));
-                p.addPotionEffect(new PotionEffect(
-                        effect("SLOWNESS"),
-                        Integer.MAX_VALUE,
-                        0,
-                        false,
-                        false,
-                        false
-                ));
-            }
-        }.runTaskLater(this, 1L);
+        later(TickWheel.Kind.RESPAWN_EFFECTS, p, hunter.match, 1L, () -> {
+            p.removePotionEffect(effects.speed);
+            p.removePotionEffect(effects.nightVision);
+            p.removePotionEffect(effects.resistance);
+            p.addPotionEffect(effects.baseSlowness);
+            if (core != null) core.give(p);
+        });
+    }
+
+    @EventHandler
+    public void onPlayerJoin(PlayerJoinEvent e) {
+        resumePlayer(e.getPlayer());
+    }
+
+    // a runner coming back (or a hunter restored from disk) picks up where they left off
+    private void resumePlayer(Player p) {
+        UUID id = p.getUniqueId();
+        HunterState hunter = hunters.get(id);
+        if (hunter != null) {
+            startHunterTask(p, hunter);
+            scheduling.run(p, () -> {
+                p.addPotionEffect(effects.baseSlowness);
+                if (core != null) core.give(p);
+            });
+            return;
+        }
+        Match match = playerMatch.get(id);
+        if (match != null && match.runners.contains(id)) {
+            startRunnerTask(p, match);
+        }
     }
 
     @EventHandler
     public void onPlayerQuit(PlayerQuitEvent e) {
         UUID id = e.getPlayer().getUniqueId();
-        if (!hunters.contains(id)) return;
+        stopPlayerTask(id);
+        HunterState hunter = hunters.remove(id);
+        if (hunter == null) {
+            // runners stay in their match so they can rejoin
+            Match match = playerMatch.get(id);
+            if (match != null) match.runnerSnapshots.remove(id);
+            return;
+        }
 
-        e.getPlayer().removePotionEffect(effect("SLOWNESS"));
-        e.getPlayer().removePotionEffect(effect("SPEED"));
-        e.getPlayer().removePotionEffect(effect("NIGHT_VISION"));
-        e.getPlayer().removePotionEffect(effect("DAMAGE_RESISTANCE"));
+        timers.cancelOwner(id);
+        stripRobotEffects(e.getPlayer());
 
-        hunters.remove(id);
-        lastAttackTime.remove(id);
-        cameraMode.remove(id);
-        overdriveActive.remove(id);
-        shieldActive.remove(id);
-        usedAbilities.remove(id);
-        pendingAbility.remove(id);
+        hunter.match.hunters.remove(id);
+        playerMatch.remove(id);
+        compassTracker.forget(id);
+        if (hud != null) hud.remove(id);
+        dropMatchIfEmpty(hunter.match);
+        store.markDirty();
     }
 
     // ------------------------------------------------------------------ //
@@ -773,18 +1074,28 @@ public class PlayerControlledRobotHunterPlugin extends JavaPlugin implements Lis
         if (!sender.hasPermission("robothunter.use")) return Collections.emptyList();
 
         if (args.length == 1) {
-            return Arrays.asList("sethunter", "setrunner", "start", "stop", "clearhunters", "abilities").stream()
+            return Arrays.asList("sethunter", "setrunner", "start", "stop", "clearhunters", "abilities", "matches", "metrics", "reload").stream()
                     .filter(s -> s.toLowerCase().startsWith(args[0].toLowerCase()))
                     .collect(Collectors.toList());
         }
 
-        if (args.length == 2 && (args[0].equalsIgnoreCase("sethunter") || args[0].equalsIgnoreCase("setrunner"))) {
+        boolean playerArg = args[0].equalsIgnoreCase("sethunter") || args[0].equalsIgnoreCase("setrunner");
+        if (args.length == 2 && playerArg) {
             return Bukkit.getOnlinePlayers().stream()
                     .map(Player::getName)
                     .filter(n -> n.toLowerCase().startsWith(args[1].toLowerCase()))
                     .collect(Collectors.toList());
         }
 
+        boolean matchArg = args[0].equalsIgnoreCase("start") || args[0].equalsIgnoreCase("stop")
+                || args[0].equalsIgnoreCase("clearhunters");
+        if ((args.length == 2 && matchArg) || (args.length == 3 && playerArg)) {
+            String prefix = args[args.length - 1].toLowerCase();
+            return matches.keySet().stream()
+                    .filter(id -> id.startsWith(prefix))
+                    .collect(Collectors.toList());
+        }
+
         return Collections.emptyList();
     }
 }
@@ -0,0 +1,377 @@
+package me.danyul.robot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// match event log. game threads claim a slot in a preallocated ring (one
+// CAS, a few array stores, no allocation, no lock) and a single writer
+// thread drains it into one fixed-record file per recorded run.
+// if the writer falls behind by a full ring, new events are dropped and
+// counted rather than blocking the game. opening and closing a file go
+// through a separate unbounded queue, so a full ring never leaves a file
+// open, and every closed file ends in an END record with its drop count.
+// see RecordingReader for the format
+final class Recorder {
+
+    // record types
+    static final byte START = 1;
+    static final byte STOP = 2;
+    static final byte ABILITY = 3;      // actor = hunter, arg = ability ordinal, xyz = hunter
+    static final byte MINE_TRIGGER = 4; // actor = runner, target = mine owner, xyz = mine
+    static final byte HIT = 5;          // actor = hunter, target = victim, value = damage
+    static final byte RUNNER_POS = 6;   // actor = runner, xyz = position
+    static final byte END = 7;          // last record of a closed file; actor msb = records dropped
+    static final byte WORLD = 8;        // before the first record in a world: world = its index, actor = its uid
+
+    static final int MAGIC = 0x52485243; // "RHRC"
+    static final short VERSION = 1;
+    static final int RECORD_SIZE = 72;
+
+    private static final int CAPACITY = 1 << 14;
+    private static final int MASK = CAPACITY - 1;
+
+    // ring columns, indexed by sequence & MASK
+    private final int[] stream = new int[CAPACITY];
+    private final long[] time = new long[CAPACITY];
+    private final byte[] type = new byte[CAPACITY];
+    private final byte[] arg = new byte[CAPACITY];
+    private final float[] value = new float[CAPACITY];
+    private final long[] actorMsb = new long[CAPACITY];
+    private final long[] actorLsb = new long[CAPACITY];
+    private final long[] targetMsb = new long[CAPACITY];
+    private final long[] targetLsb = new long[CAPACITY];
+    private final long[] worldMsb = new long[CAPACITY];
+    private final long[] worldLsb = new long[CAPACITY];
+    private final double[] x = new double[CAPACITY];
+    private final double[] y = new double[CAPACITY];
+    private final double[] z = new double[CAPACITY];
+    // sequence stored in each slot once its fields are written
+    private final AtomicLongArray published = new AtomicLongArray(CAPACITY);
+
+    private final AtomicLong head = new AtomicLong();
+    private volatile long tail;
+    private final LongAdder dropped = new LongAdder();
+
+    private final Path folder;
+    private final Logger logger;
+    private final AtomicInteger nextStream = new AtomicInteger();
+    // opens and closes waiting for the writer to reach their place in the ring
+    private final PriorityBlockingQueue<Control> controls = new PriorityBlockingQueue<>();
+    private final AtomicLong nextControl = new AtomicLong();
+    // records dropped per stream, from begin until the writer closes it
+    private final Map<Integer, LongAdder> streamDropped = new ConcurrentHashMap<>();
+    // written by the writer thread only
+    private final Map<Integer, StreamFile> open = new HashMap<>();
+
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    // opening or closing a stream's file once every ring record before
+    // sequence `at` is written; order ties by when they were queued
+    private static final class Control implements Comparable<Control> {
+        final long at;
+        final long order;
+        final int stream;
+        final Path file; // null = close
+        final long time;
+
+        Control(long at, long order, int stream, Path file, long time) {
+            this.at = at;
+            this.order = order;
+            this.stream = stream;
+            this.file = file;
+            this.time = time;
+        }
+
+        @Override
+        public int compareTo(Control other) {
+            int c = Long.compare(at, other.at);
+            return c != 0 ? c : Long.compare(order, other.order);
+        }
+    }
+
+    private static final class StreamFile {
+        final FileChannel channel;
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(RECORD_SIZE * 512).order(ByteOrder.BIG_ENDIAN);
+        // world uid -> index written in this file's WORLD records, from 1
+        final Map<UUID, Integer> worlds = new HashMap<>();
+        // the last world written, so a run that stays put skips the map
+        long lastMsb, lastLsb;
+        int lastWorld;
+
+        StreamFile(FileChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    Recorder(Path folder, Logger logger) {
+        this.folder = folder;
+        this.logger = logger;
+        for (int i = 0; i < CAPACITY; i++) {
+            published.set(i, -1L);
+        }
+        writer = new Thread(this::drainLoop, "RobotHunter-recorder");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    long dropped() {
+        return dropped.sum();
+    }
+
+    // ---------- game threads ----------
+
+    // starts a new file for a run; returns its stream id. the stream's
+    // records all claim later sequences, so the file opens before them
+    int begin(String matchId, long now) {
+        int id = nextStream.getAndIncrement();
+        streamDropped.put(id, new LongAdder());
+        control(id, folder.resolve(matchId + "-" + now + ".rhr"), now);
+        record(id, START, (byte) 0, 0f, null, null, null, 0, 0, 0);
+        return id;
+    }
+
+    void end(int stream) {
+        if (stream < 0) return;
+        record(stream, STOP, (byte) 0, 0f, null, null, null, 0, 0, 0);
+        control(stream, null, 0L);
+        LockSupport.unpark(writer);
+    }
+
+    private void control(int stream, Path file, long time) {
+        controls.add(new Control(head.get(), nextControl.getAndIncrement(), stream, file, time));
+    }
+
+    // fire and forget; false if the ring was full and the event was dropped.
+    // world is null for records without a position
+    boolean record(int s, byte kind, byte a, float v, UUID actor, UUID target, UUID world, double px, double py, double pz) {
+        if (s < 0) return false;
+        long seq;
+        do {
+            seq = head.get();
+            if (seq - tail >= CAPACITY) {
+                dropped.increment();
+                LongAdder forStream = streamDropped.get(s);
+                if (forStream != null) forStream.increment();
+                return false;
+            }
+        } while (!head.compareAndSet(seq, seq + 1));
+
+        int i = (int) (seq & MASK);
+        stream[i] = s;
+        time[i] = System.currentTimeMillis();
+        type[i] = kind;
+        arg[i] = a;
+        value[i] = v;
+        actorMsb[i] = actor != null ? actor.getMostSignificantBits() : 0L;
+        actorLsb[i] = actor != null ? actor.getLeastSignificantBits() : 0L;
+        targetMsb[i] = target != null ? target.getMostSignificantBits() : 0L;
+        targetLsb[i] = target != null ? target.getLeastSignificantBits() : 0L;
+        worldMsb[i] = world != null ? world.getMostSignificantBits() : 0L;
+        worldLsb[i] = world != null ? world.getLeastSignificantBits() : 0L;
+        x[i] = px;
+        y[i] = py;
+        z[i] = pz;
+        published.lazySet(i, seq);
+        return true;
+    }
+
+    // ---------- writer thread ----------
+
+    // stops the writer after it has drained and closed everything
+    void shutdown() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(5000L);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drainLoop() {
+        while (true) {
+            boolean stopping = !running;
+            int n = drain();
+            flushAll();
+            if (stopping && n == 0) break;
+            if (n == 0) LockSupport.parkNanos(5_000_000L);
+        }
+        // everything in the ring is written; what's left can't wait on it
+        Control c;
+        while ((c = controls.poll()) != null) {
+            apply(c);
+        }
+        for (Map.Entry<Integer, StreamFile> e : open.entrySet()) {
+            close(e.getKey(), e.getValue());
+        }
+        open.clear();
+    }
+
+    private int drain() {
+        int n = 0;
+        long seq = tail;
+        while (true) {
+            int i = (int) (seq & MASK);
+            // read before the controls: an open is queued before its
+            // stream's first record is published, so it's visible here
+            boolean ready = published.get(i) == seq;
+            n += applyControls(seq);
+            if (!ready) break;
+            try {
+                write(i);
+            } catch (IOException ex) {
+                logger.log(Level.WARNING, "Could not write recording", ex);
+            }
+            seq++;
+            tail = seq; // frees the slot for producers
+            n++;
+        }
+        return n;
+    }
+
+    // the opens and closes due before ring sequence seq
+    private int applyControls(long seq) {
+        int n = 0;
+        Control c;
+        while ((c = controls.peek()) != null && c.at <= seq) {
+            controls.poll();
+            apply(c);
+            n++;
+        }
+        return n;
+    }
+
+    private void apply(Control c) {
+        if (c.file == null) {
+            StreamFile f = open.remove(c.stream);
+            if (f != null) close(c.stream, f);
+            else streamDropped.remove(c.stream); // open failed
+            return;
+        }
+        try {
+            Files.createDirectories(c.file.getParent());
+            FileChannel channel = FileChannel.open(c.file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            StreamFile f = new StreamFile(channel);
+            writeHeader(f, c.file.getFileName().toString(), c.time);
+            open.put(c.stream, f);
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Could not open recording " + c.file, ex);
+        }
+    }
+
+    private void write(int i) throws IOException {
+        StreamFile f = open.get(stream[i]);
+        if (f == null) return; // open failed
+        int world = 0;
+        if (worldMsb[i] == f.lastMsb && worldLsb[i] == f.lastLsb) {
+            world = f.lastWorld;
+        } else if (worldMsb[i] != 0L || worldLsb[i] != 0L) {
+            UUID uid = new UUID(worldMsb[i], worldLsb[i]);
+            Integer known = f.worlds.get(uid);
+            if (known == null) {
+                // first record in this world: name it before it's used
+                known = f.worlds.size() + 1;
+                f.worlds.put(uid, known);
+                put(f, time[i], WORLD, (byte) 0, known, 0f, worldMsb[i], worldLsb[i], 0L, 0L, 0, 0, 0);
+            }
+            world = known;
+            f.lastMsb = worldMsb[i];
+            f.lastLsb = worldLsb[i];
+            f.lastWorld = known;
+        }
+        put(f, time[i], type[i], arg[i], world, value[i], actorMsb[i], actorLsb[i], targetMsb[i], targetLsb[i], x[i], y[i], z[i]);
+    }
+
+    private static void put(StreamFile f, long t, byte kind, byte a, int world, float v,
+                            long aMsb, long aLsb, long tMsb, long tLsb, double px, double py, double pz) throws IOException {
+        if (f.buffer.remaining() < RECORD_SIZE) flush(f);
+        ByteBuffer b = f.buffer;
+        b.putLong(t);
+        b.put(kind);
+        b.put(a);
+        b.putShort((short) world);
+        b.putFloat(v);
+        b.putLong(aMsb);
+        b.putLong(aLsb);
+        b.putLong(tMsb);
+        b.putLong(tLsb);
+        b.putDouble(px);
+        b.putDouble(py);
+        b.putDouble(pz);
+    }
+
+    // magic, version, record size, start time, file name, then the ability
+    // keys by ordinal so the reader doesn't need the plugin's classes
+    private static void writeHeader(StreamFile f, String name, long start) throws IOException {
+        ByteBuffer b = f.buffer;
+        b.putInt(MAGIC);
+        b.putShort(VERSION);
+        b.putShort((short) RECORD_SIZE);
+        b.putLong(start);
+        putString(b, name);
+        Ability[] abilities = Ability.values();
+        b.put((byte) abilities.length);
+        for (Ability ability : abilities) {
+            putString(b, ability.key);
+        }
+        flush(f);
+    }
+
+    private static void putString(ByteBuffer b, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        b.putShort((short) bytes.length);
+        b.put(bytes);
+    }
+
+    private void flushAll() {
+        for (StreamFile f : open.values()) {
+            try {
+                flush(f);
+            } catch (IOException ex) {
+                logger.log(Level.WARNING, "Could not write recording", ex);
+            }
+        }
+    }
+
+    private static void flush(StreamFile f) throws IOException {
+        ByteBuffer b = f.buffer;
+        if (b.position() == 0) return;
+        b.flip();
+        while (b.hasRemaining()) {
+            f.channel.write(b);
+        }
+        b.clear();
+    }
+
+    // ends the file with its drop count so the reader can tell a complete
+    // recording from a cut-off one
+    private void close(int s, StreamFile f) {
+        LongAdder lost = streamDropped.remove(s);
+        try {
+            put(f, System.currentTimeMillis(), END, (byte) 0, 0, 0f, lost != null ? lost.sum() : 0L, 0L, 0L, 0L, 0, 0, 0);
+            flush(f);
+            f.channel.close();
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Could not close recording", ex);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package me.danyul.robot;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+// reads the .rhr files written by Recorder. standalone, no server classes:
+//
+//   java -cp PlayerControlledRobotHunter.jar me.danyul.robot.RecordingReader <file.rhr> [--dump]
+//
+// file layout (big endian):
+//   int magic "RHRC", short version, short record size, long start millis,
+//   short+utf8 file name, byte ability count, (short+utf8 ability key)*
+//   then fixed 72 byte records:
+//   long time, byte type, byte arg, short world, float value,
+//   uuid actor (2 longs), uuid target (2 longs), double x, double y, double z
+// world 0 means the record has no position; otherwise it's the index a
+// WORLD record (actor = the world's uid) gave earlier in the file.
+// a file that was closed properly ends in an END record whose actor msb is
+// the number of records dropped from it; without one the run was cut off
+public final class RecordingReader {
+
+    private RecordingReader() {
+    }
+
+    static final class Header {
+        final long start;
+        final String name;
+        final String[] abilities;
+        // world uids by index - 1, as their WORLD records are read
+        final List<UUID> worlds = new ArrayList<>();
+        // set once the END record has been read
+        boolean complete;
+        long dropped;
+
+        Header(long start, String name, String[] abilities) {
+            this.start = start;
+            this.name = name;
+            this.abilities = abilities;
+        }
+
+        String ability(int ordinal) {
+            return ordinal >= 0 && ordinal < abilities.length ? abilities[ordinal] : "ability#" + ordinal;
+        }
+    }
+
+    // one decoded record; reused by forEach
+    static final class Event {
+        long time;
+        byte type;
+        byte arg;
+        float value;
+        UUID actor;
+        UUID target;
+        int world;      // index into the header's worlds, 0 = no position
+        double x, y, z;
+    }
+
+    interface Visitor {
+        void visit(Header header, Event event);
+    }
+
+    static Header forEach(Path file, Visitor visitor) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer b = ByteBuffer.allocate(1 << 16);
+            readFully(channel, b);
+            b.flip();
+
+            if (b.getInt() != Recorder.MAGIC) throw new IOException(file + " is not a recording");
+            short version = b.getShort();
+            if (version != Recorder.VERSION) throw new IOException("unsupported recording version " + version);
+            int recordSize = b.getShort();
+            long start = b.getLong();
+            String name = getString(b);
+            String[] abilities = new String[b.get()];
+            for (int i = 0; i < abilities.length; i++) {
+                abilities[i] = getString(b);
+            }
+            Header header = new Header(start, name, abilities);
+
+            Event e = new Event();
+            while (true) {
+                if (b.remaining() < recordSize) {
+                    b.compact();
+                    if (readFully(channel, b) <= 0 && b.position() < recordSize) break;
+                    b.flip();
+                    if (b.remaining() < recordSize) break; // truncated tail (crash mid-write)
+                }
+                int next = b.position() + recordSize;
+                e.time = b.getLong();
+                e.type = b.get();
+                e.arg = b.get();
+                e.world = b.getShort() & 0xFFFF;
+                e.value = b.getFloat();
+                long actorMsb = b.getLong();
+                if (e.type == Recorder.END) {
+                    header.complete = true;
+                    header.dropped = actorMsb;
+                    break;
+                }
+                e.actor = uuid(actorMsb, b.getLong());
+                e.target = uuid(b.getLong(), b.getLong());
+                e.x = b.getDouble();
+                e.y = b.getDouble();
+                e.z = b.getDouble();
+                b.position(next);
+                if (e.type == Recorder.WORLD) {
+                    header.worlds.add(e.actor);
+                    continue;
+                }
+                visitor.visit(header, e);
+            }
+            return header;
+        }
+    }
+
+    private static int readFully(FileChannel channel, ByteBuffer b) throws IOException {
+        int total = 0;
+        while (b.hasRemaining()) {
+            int n = channel.read(b);
+            if (n < 0) return total == 0 ? -1 : total;
+            total += n;
+        }
+        return total;
+    }
+
+    private static String getString(ByteBuffer b) {
+        byte[] bytes = new byte[b.getShort()];
+        b.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static UUID uuid(long msb, long lsb) {
+        return msb == 0 && lsb == 0 ? null : new UUID(msb, lsb);
+    }
+
+    // ------------------------------------------------------------------ //
+    // CLI
+    // ------------------------------------------------------------------ //
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("usage: RecordingReader <file.rhr> [--dump]");
+            System.exit(2);
+        }
+        Path file = Paths.get(args[0]);
+        boolean dump = args.length > 1 && args[1].equals("--dump");
+        if (dump) {
+            dump(file, System.out);
+        } else {
+            summarize(file, System.out);
+        }
+    }
+
+    static void dump(Path file, PrintStream out) throws IOException {
+        forEach(file, (h, e) -> out.printf(Locale.ROOT, "%9.2fs  %s%n", (e.time - h.start) / 1000.0, describe(h, e)));
+    }
+
+    private static String describe(Header h, Event e) {
+        switch (e.type) {
+            case Recorder.START:
+                return "run started";
+            case Recorder.STOP:
+                return "run stopped";
+            case Recorder.ABILITY:
+                return String.format(Locale.ROOT, "%s used %s at %.1f %.1f %.1f in world %d", e.actor, h.ability(e.arg), e.x, e.y, e.z, e.world);
+            case Recorder.MINE_TRIGGER:
+                return String.format(Locale.ROOT, "%s triggered a mine of %s at %.1f %.1f %.1f in world %d", e.actor, e.target, e.x, e.y, e.z, e.world);
+            case Recorder.HIT:
+                return String.format(Locale.ROOT, "%s hit %s for %.1f", e.actor, e.target, e.value);
+            case Recorder.RUNNER_POS:
+                return String.format(Locale.ROOT, "%s at %.1f %.1f %.1f in world %d", e.actor, e.x, e.y, e.z, e.world);
+            default:
+                return "unknown record type " + e.type;
+        }
+    }
+
+    static void summarize(Path file, PrintStream out) throws IOException {
+        long[] last = {Long.MIN_VALUE, Long.MIN_VALUE};
+        int[] records = new int[1];
+        Map<UUID, Map<String, Integer>> abilities = new TreeMap<>();
+        Map<UUID, double[]> hits = new TreeMap<>();       // count, damage
+        Map<UUID, Integer> minesTriggered = new TreeMap<>();
+        Map<UUID, double[]> travel = new TreeMap<>();     // last x, y, z, distance, world
+
+        Header header = forEach(file, (h, e) -> {
+            records[0]++;
+            if (last[0] == Long.MIN_VALUE) last[0] = e.time;
+            last[1] = e.time;
+            switch (e.type) {
+                case Recorder.ABILITY:
+                    abilities.computeIfAbsent(e.actor, k -> new TreeMap<>()).merge(h.ability(e.arg), 1, Integer::sum);
+                    break;
+                case Recorder.HIT: {
+                    double[] t = hits.computeIfAbsent(e.actor, k -> new double[2]);
+                    t[0]++;
+                    t[1] += e.value;
+                    break;
+                }
+                case Recorder.MINE_TRIGGER:
+                    minesTriggered.merge(e.actor, 1, Integer::sum);
+                    break;
+                case Recorder.RUNNER_POS: {
+                    double[] t = travel.get(e.actor);
+                    if (t == null) {
+                        travel.put(e.actor, new double[]{e.x, e.y, e.z, 0, e.world});
+                    } else {
+                        // a portal isn't distance travelled
+                        if (t[4] == e.world) {
+                            double dx = e.x - t[0], dy = e.y - t[1], dz = e.z - t[2];
+                            t[3] += Math.sqrt(dx * dx + dy * dy + dz * dz);
+                        }
+                        t[0] = e.x;
+                        t[1] = e.y;
+                        t[2] = e.z;
+                        t[4] = e.world;
+                    }
+                    break;
+                }
+            }
+        });
+
+        out.println("recording: " + header.name);
+        out.printf(Locale.ROOT, "records: %d, duration: %.1fs%n", records[0],
+                records[0] == 0 ? 0.0 : (last[1] - last[0]) / 1000.0);
+        out.println(header.complete
+                ? "complete, " + header.dropped + " record(s) dropped while recording"
+                : "incomplete: no end record, the recording was cut off");
+        out.println("worlds:");
+        for (int i = 0; i < header.worlds.size(); i++) {
+            out.println("  " + (i + 1) + " " + header.worlds.get(i));
+        }
+        out.println("abilities:");
+        abilities.forEach((id, used) -> out.println("  " + id + " " + used));
+        out.println("hits:");
+        hits.forEach((id, t) -> out.printf(Locale.ROOT, "  %s %d hit(s), %.1f damage%n", id, (int) t[0], t[1]));
+        out.println("mines triggered:");
+        minesTriggered.forEach((id, n) -> out.println("  " + id + " " + n));
+        out.println("runner distance:");
+        travel.forEach((id, t) -> out.printf(Locale.ROOT, "  %s %.0f blocks%n", id, t[3]));
+    }
+}
@@ -0,0 +1,56 @@
+package me.danyul.robot;
+
+import org.bukkit.NamespacedKey;
+import org.bukkit.Registry;
+import org.bukkit.potion.PotionEffect;
+import org.bukkit.potion.PotionEffectType;
+
+// potion effect types resolved once at enable, plus the prebuilt effects
+// the plugin applies outside abilities (those are compiled from config by
+// AbilityEngine). PotionEffect is immutable, so the same instance is handed
+// to addPotionEffect on every call
+final class RobotEffects {
+
+    final PotionEffectType slowness;
+    final PotionEffectType speed;
+    final PotionEffectType nightVision;
+    final PotionEffectType resistance;
+    final PotionEffectType glowing;
+
+    // permanent robot slowness
+    final PotionEffect baseSlowness;
+    // applied to the runner when a mine goes off
+    final PotionEffect mineSlowness;
+
+    RobotEffects(PotionEffectType slowness, PotionEffectType speed, PotionEffectType nightVision,
+                 PotionEffectType resistance, PotionEffectType glowing) {
+        this.slowness = slowness;
+        this.speed = speed;
+        this.nightVision = nightVision;
+        this.resistance = resistance;
+        this.glowing = glowing;
+
+        baseSlowness = new PotionEffect(slowness, Integer.MAX_VALUE, 0, false, false, false);
+        mineSlowness = new PotionEffect(slowness, 60, 1, false, true, true);
+    }
+
+    // throws if the server doesn't know one of the effects, so the plugin
+    // refuses to enable instead of failing on the first ability cast
+    static RobotEffects resolve() {
+        return new RobotEffects(
+                require("slowness"),
+                require("speed"),
+                require("night_vision"),
+                require("resistance"),
+                require("glowing")
+        );
+    }
+
+    private static PotionEffectType require(String key) {
+        PotionEffectType type = Registry.EFFECT.get(NamespacedKey.minecraft(key));
+        if (type == null) {
+            throw new IllegalStateException("Unknown potion effect: minecraft:" + key);
+        }
+        return type;
+    }
+}
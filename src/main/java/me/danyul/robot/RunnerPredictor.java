@@ -0,0 +1,385 @@
+package me.danyul.robot;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+// where a runner will be a little while from now, for abilities that have
+// to lead their target. extrapolate() is the straight-line guess from the
+// tracker's mean velocity and is cheap on any thread. refine() improves it
+// with a bounded A* over the blocks around the runner, looking for the
+// walkable spot they can actually reach in that time closest to the guess,
+// so a runner sprinting at a wall isn't predicted inside it. the chunks are
+// snapshotted on the runner's thread and kept for a second, so hunters
+// casting at the same runner share the copies; the search runs async and
+// only the finished Prediction comes back. hunters asking about the same
+// runner and lead while a search is running share the search too
+final class RunnerPredictor {
+
+    // furthest ahead anything is predicted
+    static final long MAX_LEAD_TICKS = 200;
+    // searches never look further than this from the runner
+    private static final int MAX_REACH = 32;
+    // a path may be this much longer than the straight line (corners, steps)
+    private static final double PATH_SLACK = 1.3;
+    // below this many blocks of travel there's nothing worth searching
+    private static final double MIN_TRAVEL = 1.5;
+    // how far down a walkable neighbour may be
+    private static final int MAX_DROP = 3;
+    private static final int NO_GROUND = Integer.MIN_VALUE;
+    // how long a chunk snapshot is reused. the cache is also capped by an
+    // estimate of the snapshots' size (block data only, ~4 KiB a section),
+    // dropping the oldest first, so many runners in deep worlds can't pin
+    // an unbounded number of copies
+    private static final long CHUNK_CACHE_MILLIS = 1000L;
+    private static final long SECTION_BYTES = 4096L;
+    private static final long CHUNK_CACHE_BYTES = 8L << 20;
+
+    static final class Prediction {
+        final World world;
+        final double x, y, z;
+        // mean blocks per tick the runner was moving, horizontal
+        final double vx, vz;
+        final long leadTicks;
+        // placed by the path search rather than the straight line
+        final boolean pathed;
+
+        Prediction(World world, double x, double y, double z, double vx, double vz, long leadTicks, boolean pathed) {
+            this.world = world;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.vx = vx;
+            this.vz = vz;
+            this.leadTicks = leadTicks;
+            this.pathed = pathed;
+        }
+
+        // blocks per second
+        double speed() {
+            return Math.sqrt(vx * vx + vz * vz) * 20.0;
+        }
+
+        Location location() {
+            return new Location(world, x, y, z);
+        }
+    }
+
+    // one search and everyone waiting on it
+    private static final class Search {
+        final UUID runnerId;
+        final Prediction rough;
+        private final List<Consumer<Prediction>> waiting = new ArrayList<>(2);
+        private boolean finished;
+
+        Search(UUID runnerId, Prediction rough, Consumer<Prediction> first) {
+            this.runnerId = runnerId;
+            this.rough = rough;
+            waiting.add(first);
+        }
+
+        synchronized boolean join(Consumer<Prediction> done) {
+            if (finished) return false;
+            waiting.add(done);
+            return true;
+        }
+
+        synchronized List<Consumer<Prediction>> finish() {
+            finished = true;
+            return waiting;
+        }
+    }
+
+    private final Scheduling scheduling;
+    private final Metrics.Histogram searchTime;
+    private final Map<UUID, Search> inflight = new ConcurrentHashMap<>();
+    // world -> chunk (MineIndex packing) -> recent snapshot
+    private final Map<UUID, Map<Long, CachedChunk>> chunkCache = new ConcurrentHashMap<>();
+    private final AtomicLong chunkCacheBytes = new AtomicLong();
+
+    // swapped by a config reload
+    private volatile boolean pathfind = true;
+    private volatile int maxNodes = 2048;
+
+    final LongAdder searches = new LongAdder();
+    final LongAdder joined = new LongAdder();
+    final LongAdder chunksCopied = new LongAdder();
+
+    long chunkCacheBytes() {
+        return chunkCacheBytes.get();
+    }
+
+    RunnerPredictor(Scheduling scheduling, Metrics.Histogram searchTime) {
+        this.scheduling = scheduling;
+        this.searchTime = searchTime;
+    }
+
+    void configure(boolean pathfind, int maxNodes) {
+        this.pathfind = pathfind;
+        this.maxNodes = maxNodes;
+    }
+
+    // ---------- straight line (any thread) ----------
+
+    // where the runner's last second of movement carries them in leadTicks,
+    // at their current height; null if they haven't been sampled
+    static Prediction extrapolate(RunnerTracker.Snapshot runner, long leadTicks) {
+        RunnerTracker.Sample s = new RunnerTracker.Sample();
+        if (!runner.copyTo(s)) return null;
+        long lead = Math.max(0L, Math.min(MAX_LEAD_TICKS, leadTicks));
+        return new Prediction(s.world, s.x + s.mvx * lead, s.y, s.z + s.mvz * lead, s.mvx, s.mvz, lead, false);
+    }
+
+    // ---------- path search ----------
+
+    // false if there's nothing to search (pathing off, runner barely moving
+    // or on another server), in which case rough is the answer. otherwise
+    // done gets exactly one prediction later, on an unspecified thread: the
+    // searched one, or rough back if the search couldn't run (runner gone,
+    // in the air, unowned chunks)
+    boolean refine(RunnerTracker.Snapshot runner, Prediction rough, Consumer<Prediction> done) {
+        if (!pathfind || runner.isRemote() || travel(rough) < MIN_TRAVEL) return false;
+        Search current = inflight.get(runner.id);
+        if (current != null && current.rough.leadTicks == rough.leadTicks && current.join(done)) {
+            joined.increment();
+            return true;
+        }
+        Search search = new Search(runner.id, rough, done);
+        inflight.put(runner.id, search);
+        searches.increment();
+        scheduling.run(runner.player, () -> snapshot(search, runner), () -> finish(search, search.rough));
+        return true;
+    }
+
+    private static double travel(Prediction p) {
+        return Math.sqrt(p.vx * p.vx + p.vz * p.vz) * p.leadTicks;
+    }
+
+    // on the runner's thread: copy the chunks the search may cover
+    private void snapshot(Search search, RunnerTracker.Snapshot runner) {
+        RunnerTracker.Sample from = new RunnerTracker.Sample();
+        World world = search.rough.world;
+        if (!runner.copyTo(from) || from.world != world) {
+            finish(search, search.rough);
+            return;
+        }
+        double budget = travel(search.rough) * PATH_SLACK + 2.0;
+        int reach = (int) Math.ceil(Math.min(MAX_REACH, budget + 1.0));
+        int bx = (int) Math.floor(from.x), bz = (int) Math.floor(from.z);
+        Map<Long, CachedChunk> cache = chunkCache.computeIfAbsent(world.getUID(), k -> new ConcurrentHashMap<>());
+        long now = System.currentTimeMillis();
+        long bytes = (long) ((world.getMaxHeight() - world.getMinHeight()) >> 4) * SECTION_BYTES;
+        boolean copied = false;
+        Map<Long, ChunkSnapshot> chunks = new HashMap<>();
+        for (int cx = (bx - reach) >> 4; cx <= (bx + reach) >> 4; cx++) {
+            for (int cz = (bz - reach) >> 4; cz <= (bz + reach) >> 4; cz++) {
+                long key = MineIndex.pack(cx, 0, cz);
+                CachedChunk cached = cache.get(key);
+                if (cached == null || now - cached.takenAt > CHUNK_CACHE_MILLIS) {
+                    if (!world.isChunkLoaded(cx, cz) || !Bukkit.isOwnedByCurrentRegion(world, cx, cz)) continue;
+                    cached = new CachedChunk(world.getChunkAt(cx, cz).getChunkSnapshot(false, false, false), now, bytes);
+                    CachedChunk replaced = cache.put(key, cached);
+                    chunkCacheBytes.addAndGet(bytes - (replaced != null ? replaced.bytes : 0L));
+                    chunksCopied.increment();
+                    copied = true;
+                }
+                chunks.put(key, cached.snapshot);
+            }
+        }
+        if (copied) evictChunks(now);
+        Terrain terrain = new Terrain(chunks, world.getMinHeight(), world.getMaxHeight());
+        int limit = maxNodes;
+        scheduling.async(() -> {
+            long start = System.nanoTime();
+            Prediction result = search.rough;
+            try {
+                result = search(terrain, from, search.rough, Math.min(budget, MAX_REACH), limit);
+            } finally {
+                searchTime.record(System.nanoTime() - start);
+                // waiters hear back even if the search blew up
+                finish(search, result);
+            }
+        });
+    }
+
+    // after an insert, from any runner's thread: drops expired snapshots in
+    // every world, then the oldest until the cache fits its byte cap.
+    // remove(key, value) so two threads evicting at once count each once
+    private void evictChunks(long now) {
+        for (Map<Long, CachedChunk> cache : chunkCache.values()) {
+            for (Map.Entry<Long, CachedChunk> e : cache.entrySet()) {
+                CachedChunk c = e.getValue();
+                if (now - c.takenAt > CHUNK_CACHE_MILLIS && cache.remove(e.getKey(), c)) {
+                    chunkCacheBytes.addAndGet(-c.bytes);
+                }
+            }
+        }
+        while (chunkCacheBytes.get() > CHUNK_CACHE_BYTES) {
+            Map<Long, CachedChunk> oldestIn = null;
+            Map.Entry<Long, CachedChunk> oldest = null;
+            for (Map<Long, CachedChunk> cache : chunkCache.values()) {
+                for (Map.Entry<Long, CachedChunk> e : cache.entrySet()) {
+                    if (oldest == null || e.getValue().takenAt < oldest.getValue().takenAt) {
+                        oldestIn = cache;
+                        oldest = e;
+                    }
+                }
+            }
+            if (oldest == null) break;
+            if (oldestIn.remove(oldest.getKey(), oldest.getValue())) {
+                chunkCacheBytes.addAndGet(-oldest.getValue().bytes);
+            }
+        }
+    }
+
+    // snapshots are immutable, so any region's search can read one
+    private static final class CachedChunk {
+        final ChunkSnapshot snapshot;
+        final long takenAt;
+        final long bytes;
+
+        CachedChunk(ChunkSnapshot snapshot, long takenAt, long bytes) {
+            this.snapshot = snapshot;
+            this.takenAt = takenAt;
+            this.bytes = bytes;
+        }
+    }
+
+    private void finish(Search search, Prediction result) {
+        inflight.remove(search.runnerId, search);
+        for (Consumer<Prediction> done : search.finish()) {
+            done.accept(result);
+        }
+    }
+
+    // chunk snapshots keyed like MineIndex cells; anything outside them
+    // counts as blocked
+    private static final class Terrain {
+        final Map<Long, ChunkSnapshot> chunks;
+        final int minY, maxY;
+        private long lastKey = Long.MIN_VALUE;
+        private ChunkSnapshot last;
+
+        Terrain(Map<Long, ChunkSnapshot> chunks, int minY, int maxY) {
+            this.chunks = chunks;
+            this.minY = minY;
+            this.maxY = maxY;
+        }
+
+        private ChunkSnapshot chunk(int x, int z) {
+            long key = MineIndex.pack(x >> 4, 0, z >> 4);
+            if (key != lastKey) {
+                lastKey = key;
+                last = chunks.get(key);
+            }
+            return last;
+        }
+
+        boolean solid(int x, int y, int z) {
+            if (y < minY || y >= maxY) return false;
+            ChunkSnapshot c = chunk(x, z);
+            return c != null && c.getBlockType(x & 15, y, z & 15).isSolid();
+        }
+
+        // room for a player's feet and head
+        boolean clear(int x, int y, int z) {
+            if (y < minY || chunk(x, z) == null) return false;
+            return !solid(x, y, z) && !solid(x, y + 1, z);
+        }
+
+        boolean standable(int x, int y, int z) {
+            return clear(x, y, z) && solid(x, y - 1, z);
+        }
+
+        // feet y at or just below y, or NO_GROUND (flying, swimming, falling far)
+        int ground(int x, int y, int z) {
+            for (int ny = y; ny >= y - MAX_DROP; ny--) {
+                if (standable(x, ny, z)) return ny;
+            }
+            return NO_GROUND;
+        }
+
+        // feet y after walking from (x, y, z) into column (nx, nz): level,
+        // one block up, or a short drop. NO_GROUND if it can't be done
+        int step(int x, int y, int z, int nx, int nz) {
+            if (standable(nx, y, nz)) return y;
+            if (standable(nx, y + 1, nz) && !solid(x, y + 2, z)) return y + 1;
+            if (!clear(nx, y, nz)) return NO_GROUND;
+            for (int ny = y - 1; ny >= y - MAX_DROP; ny--) {
+                if (standable(nx, ny, nz)) return ny;
+            }
+            return NO_GROUND;
+        }
+    }
+
+    private static final class Node {
+        final int x, y, z;
+        final double g, h;
+
+        Node(int x, int y, int z, double g, double h) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.g = g;
+            this.h = h;
+        }
+    }
+
+    private static final int[] DX = {1, -1, 0, 0, 1, 1, -1, -1};
+    private static final int[] DZ = {0, 0, 1, -1, 1, -1, 1, -1};
+    private static final double DIAGONAL = Math.sqrt(2.0);
+
+    // A* towards the straight-line guess, cut off at the distance the runner
+    // can cover; the answer is the reached cell closest to the guess
+    private static Prediction search(Terrain t, RunnerTracker.Sample from, Prediction rough, double budget, int maxNodes) {
+        int sx = (int) Math.floor(from.x), sz = (int) Math.floor(from.z);
+        int sy = t.ground(sx, (int) Math.floor(from.y), sz);
+        if (sy == NO_GROUND) return rough;
+        double gx = rough.x, gz = rough.z;
+
+        PriorityQueue<Node> open = new PriorityQueue<>(64, Comparator.comparingDouble(n -> n.g + n.h));
+        Map<Long, Node> reached = new HashMap<>();
+        Node start = new Node(sx, sy, sz, 0.0, distance(sx, sz, gx, gz));
+        open.add(start);
+        reached.put(MineIndex.pack(sx, sy, sz), start);
+        Node best = start;
+        int expanded = 0;
+
+        while (!open.isEmpty() && expanded < maxNodes) {
+            Node n = open.poll();
+            if (reached.get(MineIndex.pack(n.x, n.y, n.z)) != n) continue; // superseded by a cheaper path
+            expanded++;
+            if (n.h < best.h) best = n;
+            if (n.h < 1.0) break;
+            for (int d = 0; d < DX.length; d++) {
+                int nx = n.x + DX[d], nz = n.z + DZ[d];
+                boolean diagonal = d >= 4;
+                // no cutting corners
+                if (diagonal && (!t.clear(nx, n.y, n.z) || !t.clear(n.x, n.y, nz))) continue;
+                int ny = t.step(n.x, n.y, n.z, nx, nz);
+                if (ny == NO_GROUND) continue;
+                double g = n.g + (diagonal ? DIAGONAL : 1.0) + (ny > n.y ? 0.5 : 0.0);
+                if (g > budget) continue;
+                long key = MineIndex.pack(nx, ny, nz);
+                Node seen = reached.get(key);
+                if (seen != null && seen.g <= g) continue;
+                Node next = new Node(nx, ny, nz, g, distance(nx, nz, gx, gz));
+                reached.put(key, next);
+                open.add(next);
+            }
+        }
+        return new Prediction(rough.world, best.x + 0.5, best.y, best.z + 0.5, rough.vx, rough.vz, rough.leadTicks, true);
+    }
+
+    private static double distance(int x, int z, double gx, double gz) {
+        double dx = x + 0.5 - gx, dz = z + 0.5 - gz;
+        return Math.sqrt(dx * dx + dz * dz);
+    }
+}
@@ -0,0 +1,246 @@
+package me.danyul.robot;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+import java.lang.invoke.VarHandle;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// samples every runner once per tick on the runner's own thread into one
+// reused snapshot, so the compass, abilities, mines and the recorder never
+// look the runner up or allocate a Location to find out where they are.
+// listeners only hear about a runner once they've moved past the publish
+// distance (or changed world) since the last time they were told. each
+// runner also keeps its last second of positions, so readers get a mean
+// velocity that a single jittery tick can't throw off
+final class RunnerTracker {
+
+    // samples in the mean-velocity window (one per tick)
+    static final int HISTORY = 20;
+    // a jump this far in one tick is a teleport; the window starts over
+    private static final double TELEPORT_SQ = 8.0 * 8.0;
+
+    // one runner's latest sample. written only by the runner's thread;
+    // other threads read it under a sequence check (odd = being written)
+    // and retry if a sample landed mid-read
+    static final class Snapshot {
+        final UUID id;
+        // the entity the sample comes from, for handing work to its scheduler.
+        // null for a runner on another server (see MatchSync)
+        final Player player;
+
+        private volatile int seq;
+        private World world;
+        private double x, y, z;
+        private double vx, vy, vz;   // blocks moved since the previous sample (one tick)
+        private double mvx, mvy, mvz;   // mean blocks per tick over the history window
+        private long chunkKey;
+        // bumped each time the runner moved past the publish distance
+        private volatile int moves;
+
+        // runner thread only
+        private final Location scratch;
+        private long samples;
+        private World publishedWorld;
+        private double px, py, pz;
+        private final double[] hx = new double[HISTORY], hy = new double[HISTORY], hz = new double[HISTORY];
+        private int head, filled;
+
+        Snapshot(Player player) {
+            this.id = player.getUniqueId();
+            this.player = player;
+            this.scratch = new Location(null, 0, 0, 0);
+        }
+
+        // a runner on another server, placed by MatchSync
+        Snapshot(UUID id) {
+            this.id = id;
+            this.player = null;
+            this.scratch = null;
+        }
+
+        boolean isRemote() {
+            return player == null;
+        }
+
+        // remote runners only, from the global thread. positions arrive a few
+        // ticks apart, so there's no velocity and predictions don't lead them
+        void place(World w, double nx, double ny, double nz) {
+            int s = seq;
+            seq = s + 1;
+            VarHandle.storeStoreFence();
+            world = w;
+            x = nx;
+            y = ny;
+            z = nz;
+            vx = vy = vz = 0;
+            mvx = mvy = mvz = 0;
+            chunkKey = chunkKey(nx, nz);
+            seq = s + 2;
+            samples++;
+        }
+
+        int moves() {
+            return moves;
+        }
+
+        // how many times the runner's task has sampled; runner thread only
+        long samples() {
+            return samples;
+        }
+
+        // copies one consistent sample into out; false if nothing sampled yet
+        boolean copyTo(Sample out) {
+            int s;
+            do {
+                s = seq;
+                if (s == 0) return false;
+                if ((s & 1) != 0) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+                out.world = world;
+                out.x = x;
+                out.y = y;
+                out.z = z;
+                out.vx = vx;
+                out.vy = vy;
+                out.vz = vz;
+                out.mvx = mvx;
+                out.mvy = mvy;
+                out.mvz = mvz;
+                out.chunkKey = chunkKey;
+                VarHandle.acquireFence();
+            } while ((s & 1) != 0 || seq != s);
+            return true;
+        }
+
+        // squared distance to the point, or MAX_VALUE in another world / unsampled
+        double distanceSquared(World in, double ox, double oy, double oz) {
+            int s;
+            double d;
+            do {
+                s = seq;
+                if (s == 0) return Double.MAX_VALUE;
+                if ((s & 1) != 0) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+                if (world != in) {
+                    d = Double.MAX_VALUE;
+                } else {
+                    double dx = x - ox, dy = y - oy, dz = z - oz;
+                    d = dx * dx + dy * dy + dz * dz;
+                }
+                VarHandle.acquireFence();
+                if (seq == s) return d;
+            } while (true);
+        }
+
+        // a fresh Location for APIs that need one, or null if unsampled
+        Location position() {
+            Sample s = new Sample();
+            return copyTo(s) ? new Location(s.world, s.x, s.y, s.z) : null;
+        }
+    }
+
+    // a reader's private copy of a snapshot
+    static final class Sample {
+        World world;
+        double x, y, z;
+        double vx, vy, vz;
+        double mvx, mvy, mvz;
+        long chunkKey;
+    }
+
+    interface MoveListener {
+        // on the runner's thread; at is the tracker's scratch, don't keep it
+        void runnerMoved(Match match, Snapshot runner, Location at);
+    }
+
+    private final List<MoveListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile double publishDistanceSq = 1.0;
+
+    void setPublishDistance(double blocks) {
+        this.publishDistanceSq = blocks * blocks;
+    }
+
+    void addListener(MoveListener listener) {
+        listeners.add(listener);
+    }
+
+    // the runner's per-tick sample, on the runner's thread. returns the
+    // scratch location that was sampled into (valid until the next call)
+    Location sample(Match match, Snapshot r) {
+        Location at = r.player.getLocation(r.scratch);
+        World w = at.getWorld();
+        double nx = at.getX(), ny = at.getY(), nz = at.getZ();
+
+        double nvx = 0, nvy = 0, nvz = 0;
+        if (r.samples > 0 && w == r.world) {
+            nvx = nx - r.x;
+            nvy = ny - r.y;
+            nvz = nz - r.z;
+        }
+
+        // history: runner thread only, outside the sequence
+        if (r.samples == 0 || w != r.world || nvx * nvx + nvy * nvy + nvz * nvz > TELEPORT_SQ) r.filled = 0;
+        r.hx[r.head] = nx;
+        r.hy[r.head] = ny;
+        r.hz[r.head] = nz;
+        r.head = (r.head + 1) % HISTORY;
+        if (r.filled < HISTORY) r.filled++;
+        double mx = 0, my = 0, mz = 0;
+        if (r.filled > 1) {
+            int oldest = (r.head - r.filled + HISTORY) % HISTORY;
+            int span = r.filled - 1;
+            mx = (nx - r.hx[oldest]) / span;
+            my = (ny - r.hy[oldest]) / span;
+            mz = (nz - r.hz[oldest]) / span;
+        }
+
+        int s = r.seq;
+        r.seq = s + 1;
+        VarHandle.storeStoreFence();
+        r.world = w;
+        r.x = nx;
+        r.y = ny;
+        r.z = nz;
+        r.vx = nvx;
+        r.vy = nvy;
+        r.vz = nvz;
+        r.mvx = mx;
+        r.mvy = my;
+        r.mvz = mz;
+        r.chunkKey = chunkKey(nx, nz);
+        r.seq = s + 2;
+        r.samples++;
+
+        boolean moved = w != r.publishedWorld;
+        if (!moved) {
+            double dx = nx - r.px, dy = ny - r.py, dz = nz - r.pz;
+            moved = dx * dx + dy * dy + dz * dz >= publishDistanceSq;
+        }
+        if (moved) {
+            r.publishedWorld = w;
+            r.px = nx;
+            r.py = ny;
+            r.pz = nz;
+            r.moves++;
+            for (MoveListener listener : listeners) {
+                listener.runnerMoved(match, r, at);
+            }
+        }
+        return at;
+    }
+
+    // same packing as Paper's Chunk#getChunkKey
+    static long chunkKey(double x, double z) {
+        long cx = (long) Math.floor(x) >> 4;
+        long cz = (long) Math.floor(z) >> 4;
+        return (cx & 0xffffffffL) | ((cz & 0xffffffffL) << 32);
+    }
+}
@@ -0,0 +1,85 @@
+package me.danyul.robot;
+
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+
+import java.util.concurrent.TimeUnit;
+
+// every task the plugin runs goes through here. Paper's region-aware
+// schedulers run player work on the thread that owns the player and
+// location work on the thread that owns the chunk when on Folia; on plain
+// Paper they all end up on the main thread
+final class Scheduling {
+
+    private final Plugin plugin;
+
+    Scheduling(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    // ---------- global (no players or chunks touched directly) ----------
+
+    ScheduledTask globalTimer(long delayTicks, long periodTicks, Runnable task) {
+        return Bukkit.getGlobalRegionScheduler().runAtFixedRate(plugin, t -> task.run(), Math.max(1L, delayTicks), periodTicks);
+    }
+
+    void global(Runnable task) {
+        Bukkit.getGlobalRegionScheduler().execute(plugin, task);
+    }
+
+    // ---------- per entity ----------
+
+    // runs on the entity's thread: inline if we're already there, otherwise
+    // next tick. dropped if the entity is gone (quit, removed)
+    void run(Entity entity, Runnable task) {
+        if (Bukkit.isOwnedByCurrentRegion(entity)) {
+            task.run();
+        } else {
+            entity.getScheduler().execute(plugin, task, null, 1L);
+        }
+    }
+
+    // same, but retired runs instead (on an unspecified thread) if the
+    // entity is gone, for callers that must hear back either way
+    void run(Entity entity, Runnable task, Runnable retired) {
+        if (Bukkit.isOwnedByCurrentRegion(entity)) {
+            task.run();
+        } else if (!entity.getScheduler().execute(plugin, task, retired, 1L)) {
+            retired.run();
+        }
+    }
+
+    // repeating task that follows the entity between regions. retired runs
+    // (on an unspecified thread) once the entity is removed, e.g. on quit
+    ScheduledTask timer(Entity entity, long delayTicks, long periodTicks, Runnable task, Runnable retired) {
+        return entity.getScheduler().runAtFixedRate(plugin, t -> task.run(), retired, Math.max(1L, delayTicks), periodTicks);
+    }
+
+    // ---------- per location ----------
+
+    void run(Location loc, Runnable task) {
+        if (Bukkit.isOwnedByCurrentRegion(loc)) {
+            task.run();
+        } else {
+            Bukkit.getRegionScheduler().execute(plugin, loc, task);
+        }
+    }
+
+    // ---------- off-thread ----------
+
+    void async(Runnable task) {
+        Bukkit.getAsyncScheduler().runNow(plugin, t -> task.run());
+    }
+
+    ScheduledTask asyncTimer(long delaySeconds, long periodSeconds, Runnable task) {
+        return Bukkit.getAsyncScheduler().runAtFixedRate(plugin, t -> task.run(), delaySeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    void cancelAll() {
+        Bukkit.getGlobalRegionScheduler().cancelTasks(plugin);
+        Bukkit.getAsyncScheduler().cancelTasks(plugin);
+    }
+}
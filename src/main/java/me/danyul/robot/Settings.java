@@ -0,0 +1,98 @@
+package me.danyul.robot;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.Locale;
+
+// everything /robothunter reload can change, parsed and validated in one
+// go into flat tables. never modified after load(): the plugin swaps the
+// whole object through one volatile field, so a reader that grabs it once
+// sees one consistent config without locking
+final class Settings {
+
+    // MOVE: check when the runner changes block, TIMER: poll every few ticks
+    enum MineTriggerMode { MOVE, TIMER }
+
+    // compiled abilities and their unlock times (seconds after start), by Ability ordinal
+    final AbilityDefinition[] abilities;
+    final int[] unlockSeconds;
+
+    final MineTriggerMode mineTriggerMode;
+    final long mineTtlMillis;
+    final int mineMaxPerOwner;
+    // longer jumps than this between checks are teleports, not a path to sweep
+    final double maxMineSweep;
+    // ticks between mine shimmers for the owner's team, 0 = off
+    final int mineShimmerTicks;
+
+    final double compassUpdateDistance;
+    final double trackingPublishDistance;
+
+    final double feedbackViewRadius;
+    final int feedbackBudget;
+
+    // refine runner predictions with a path search, and its node cap
+    final boolean predictionPathfind;
+    final int predictionMaxNodes;
+
+    final WeaponTable weapons;
+
+    private Settings(AbilityDefinition[] abilities, MineTriggerMode mineTriggerMode, long mineTtlMillis, int mineMaxPerOwner,
+                     double maxMineSweep, int mineShimmerTicks, double compassUpdateDistance, double trackingPublishDistance,
+                     double feedbackViewRadius, int feedbackBudget, boolean predictionPathfind, int predictionMaxNodes,
+                     WeaponTable weapons) {
+        this.abilities = abilities;
+        this.unlockSeconds = new int[abilities.length];
+        for (int i = 0; i < abilities.length; i++) {
+            unlockSeconds[i] = abilities[i].unlockSeconds;
+        }
+        this.mineTriggerMode = mineTriggerMode;
+        this.mineTtlMillis = mineTtlMillis;
+        this.mineMaxPerOwner = mineMaxPerOwner;
+        this.maxMineSweep = maxMineSweep;
+        this.mineShimmerTicks = mineShimmerTicks;
+        this.compassUpdateDistance = compassUpdateDistance;
+        this.trackingPublishDistance = trackingPublishDistance;
+        this.feedbackViewRadius = feedbackViewRadius;
+        this.feedbackBudget = feedbackBudget;
+        this.predictionPathfind = predictionPathfind;
+        this.predictionMaxNodes = predictionMaxNodes;
+        this.weapons = weapons;
+    }
+
+    // safe off the main thread: only reads the section and the registries.
+    // throws IllegalArgumentException naming the first bad value
+    static Settings load(ConfigurationSection cfg) {
+        AbilityDefinition[] abilities = AbilityEngine.compile(cfg.getConfigurationSection("abilities"));
+
+        String mode = cfg.getString("mines.trigger_mode", "move");
+        MineTriggerMode triggerMode;
+        try {
+            triggerMode = MineTriggerMode.valueOf(mode.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("mines.trigger_mode must be move or timer, not '" + mode + "'");
+        }
+
+        return new Settings(
+                abilities,
+                triggerMode,
+                Math.max(0L, cfg.getLong("mines.ttl_seconds", 300L)) * 1000L,
+                Math.max(0, cfg.getInt("mines.max_per_owner", 9)),
+                positive(cfg, "mines.max_sweep", 16.0),
+                Math.max(0, cfg.getInt("mines.shimmer_ticks", 20)),
+                Math.max(0.0, cfg.getDouble("compass.update_distance", 2.0)),
+                Math.max(0.0, cfg.getDouble("tracking.publish_distance", 1.0)),
+                positive(cfg, "feedback.view_radius", 48.0),
+                Math.max(0, cfg.getInt("feedback.budget_per_tick", 24)),
+                cfg.getBoolean("prediction.pathfind", true),
+                Math.max(1, cfg.getInt("prediction.max_nodes", 2048)),
+                WeaponTable.load(cfg.getConfigurationSection("weapons"))
+        );
+    }
+
+    private static double positive(ConfigurationSection cfg, String path, double def) {
+        double v = cfg.getDouble(path, def);
+        if (!(v > 0)) throw new IllegalArgumentException(path + " must be greater than 0");
+        return v;
+    }
+}
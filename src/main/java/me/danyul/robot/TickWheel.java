@@ -0,0 +1,160 @@
+package me.danyul.robot;
+
+import java.util.*;
+
+// hashed timing wheel for short ability timers (flag expiry, camera
+// return, delayed stages, explosions, respawn effects). one shared task calls advance()
+// every tick instead of each activation scheduling its own BukkitRunnable,
+// and entries can be cancelled per hunter or per match in bulk. guarded by
+// its own lock since hunters schedule from their region threads on Folia
+final class TickWheel {
+
+    enum Kind {
+        // puts the hunter back the way they were (camera return, base
+        // slowness); a cancel runs it at once instead of dropping it
+        ABILITY_RESTORE,
+        EXPLOSION,
+        RESPAWN_EFFECTS
+    }
+
+    static final class Entry {
+        final Kind kind;
+        final UUID owner;
+        final Match match;
+        final Runnable action;
+        final long deadline;
+        private Entry prev, next;
+        private boolean done;
+
+        private Entry(Kind kind, UUID owner, Match match, Runnable action, long deadline) {
+            this.kind = kind;
+            this.owner = owner;
+            this.match = match;
+            this.action = action;
+            this.deadline = deadline;
+        }
+    }
+
+    private static final int SLOTS = 512; // > 25s of ticks, most timers land in one lap
+    private static final int MASK = SLOTS - 1;
+
+    // head of each slot's doubly linked list
+    private final Entry[] slots = new Entry[SLOTS];
+    // owner -> their live entries, for bulk cancel
+    private final Map<UUID, List<Entry>> byOwner = new HashMap<>();
+    private final int[] pendingByKind = new int[Kind.values().length];
+    private long now;
+    private int pending;
+
+    synchronized Entry schedule(Kind kind, UUID owner, Match match, long delayTicks, Runnable action) {
+        Entry e = new Entry(kind, owner, match, action, now + Math.max(1L, delayTicks));
+        int slot = (int) (e.deadline & MASK);
+        e.next = slots[slot];
+        if (e.next != null) e.next.prev = e;
+        slots[slot] = e;
+
+        byOwner.computeIfAbsent(owner, k -> new ArrayList<>(2)).add(e);
+        pendingByKind[kind.ordinal()]++;
+        pending++;
+        return e;
+    }
+
+    // run everything due this tick
+    synchronized void advance() {
+        now++;
+        int slot = (int) (now & MASK);
+        Entry e = slots[slot];
+        while (e != null) {
+            Entry next = e.next;
+            if (e.deadline <= now) {
+                remove(e);
+                e.action.run();
+                // the action may have cancelled what we were about to visit
+                if (next != null && next.done) next = slots[slot];
+            }
+            e = next;
+        }
+    }
+
+    synchronized boolean cancel(Entry e) {
+        if (e == null || e.done) return false;
+        remove(e);
+        if (e.kind == Kind.ABILITY_RESTORE) e.action.run();
+        return true;
+    }
+
+    synchronized int cancelOwner(UUID owner) {
+        List<Entry> list = byOwner.get(owner);
+        if (list == null) return 0;
+        int n = 0;
+        for (Entry e : list.toArray(new Entry[0])) {
+            if (cancel(e)) n++;
+        }
+        return n;
+    }
+
+    synchronized int cancelMatch(Match match) {
+        List<Entry> restores = new ArrayList<>();
+        int n = 0;
+        for (int i = 0; i < SLOTS; i++) {
+            Entry e = slots[i];
+            while (e != null) {
+                Entry next = e.next;
+                if (e.match == match) {
+                    remove(e);
+                    if (e.kind == Kind.ABILITY_RESTORE) restores.add(e);
+                    n++;
+                }
+                e = next;
+            }
+        }
+        // after the sweep, so anything they schedule isn't swept up too
+        for (Entry e : restores) {
+            e.action.run();
+        }
+        return n;
+    }
+
+    // on disable: restores still run, everything else is dropped
+    synchronized void cancelAll() {
+        List<Entry> restores = new ArrayList<>();
+        for (Entry head : slots) {
+            for (Entry e = head; e != null; e = e.next) {
+                e.done = true;
+                if (e.kind == Kind.ABILITY_RESTORE) restores.add(e);
+            }
+        }
+        Arrays.fill(slots, null);
+        byOwner.clear();
+        Arrays.fill(pendingByKind, 0);
+        pending = 0;
+        for (Entry e : restores) {
+            e.action.run();
+        }
+    }
+
+    synchronized int pending() {
+        return pending;
+    }
+
+    synchronized int pending(Kind kind) {
+        return pendingByKind[kind.ordinal()];
+    }
+
+    private void remove(Entry e) {
+        e.done = true;
+        int slot = (int) (e.deadline & MASK);
+        if (e.prev != null) e.prev.next = e.next;
+        else slots[slot] = e.next;
+        if (e.next != null) e.next.prev = e.prev;
+        e.prev = e.next = null;
+
+        List<Entry> list = byOwner.get(e.owner);
+        if (list != null) {
+            list.remove(e);
+            if (list.isEmpty()) byOwner.remove(e.owner);
+        }
+        pendingByKind[e.kind.ordinal()]--;
+        pending--;
+    }
+}
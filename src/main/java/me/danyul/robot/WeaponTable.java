@@ -0,0 +1,69 @@
+package me.danyul.robot;
+
+import org.bukkit.Material;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.Arrays;
+
+// hunter melee bonus and hit cooldown for every item type, built from the
+// weapons section at load. a hit is one array read by Material ordinal;
+// the extra last slot stands for an empty hand
+final class WeaponTable {
+
+    private static final int EMPTY_HAND = Material.values().length;
+
+    private final double[] bonus = new double[EMPTY_HAND + 1];
+    private final long[] cooldownMillis = new long[EMPTY_HAND + 1];
+
+    private WeaponTable(double defaultBonus, long defaultCooldownMillis) {
+        Arrays.fill(bonus, defaultBonus);
+        Arrays.fill(cooldownMillis, defaultCooldownMillis);
+    }
+
+    double bonus(Material weapon) {
+        return bonus[weapon != null ? weapon.ordinal() : EMPTY_HAND];
+    }
+
+    long cooldownMillis(Material weapon) {
+        return cooldownMillis[weapon != null ? weapon.ordinal() : EMPTY_HAND];
+    }
+
+    // the hunter's melee at now with weapon: false while that weapon's hit
+    // cooldown is still running, otherwise the hit lands and restarts it
+    boolean swing(HunterState state, Material weapon, long now) {
+        if (now - state.lastAttackTime < cooldownMillis(weapon)) return false;
+        state.lastAttackTime = now;
+        return true;
+    }
+
+    // main-hand item type, null for an empty hand
+    static Material held(Player hunter) {
+        ItemStack held = hunter.getInventory().getItemInMainHand();
+        return held != null ? held.getType() : null;
+    }
+
+    // throws IllegalArgumentException naming the bad entry
+    static WeaponTable load(ConfigurationSection cfg) {
+        double defaultBonus = cfg != null ? cfg.getDouble("default_bonus", 1.0) : 1.0;
+        long defaultCooldown = cfg != null ? cfg.getLong("default_cooldown_ms", 600L) : 600L;
+        if (defaultCooldown < 0) throw new IllegalArgumentException("weapons.default_cooldown_ms can't be negative");
+        WeaponTable table = new WeaponTable(defaultBonus, defaultCooldown);
+
+        ConfigurationSection types = cfg != null ? cfg.getConfigurationSection("types") : null;
+        if (types == null) return table;
+        for (String key : types.getKeys(false)) {
+            String path = "weapons.types." + key;
+            Material material = Material.matchMaterial(key);
+            if (material == null || material.isLegacy()) throw new IllegalArgumentException(path + ": unknown item type");
+            ConfigurationSection entry = types.getConfigurationSection(key);
+            if (entry == null) throw new IllegalArgumentException(path + " needs bonus and/or cooldown_ms");
+            long cooldown = entry.getLong("cooldown_ms", defaultCooldown);
+            if (cooldown < 0) throw new IllegalArgumentException(path + ".cooldown_ms can't be negative");
+            table.bonus[material.ordinal()] = entry.getDouble("bonus", defaultBonus);
+            table.cooldownMillis[material.ordinal()] = cooldown;
+        }
+        return table;
+    }
+}
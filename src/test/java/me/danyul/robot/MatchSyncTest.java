@@ -0,0 +1,464 @@
+package me.danyul.robot;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// two MatchSyncs over a Loopback hub, one tick at a time. "a" sends through
+// a bus that can drop or mangle its frames on the way to "b"
+class MatchSyncTest {
+
+    private static final byte[] SECRET = "test-secret-0123456789".getBytes(StandardCharsets.UTF_8);
+    private static final String MATCH_ID = "main";
+
+    // a's bus: records every frame it publishes, and passes each through
+    // the current filter first (null from the filter = lost, or held back)
+    private static final class Lossy implements MatchBus {
+        final MatchBus inner;
+        final List<byte[]> published = new ArrayList<>();
+        final List<byte[]> held = new ArrayList<>();
+        UnaryOperator<byte[]> filter = UnaryOperator.identity();
+
+        void hold() {
+            filter = frame -> {
+                held.add(frame);
+                return null;
+            };
+        }
+
+        // lets the held frames through, late, and passes later ones again
+        void release() {
+            filter = UnaryOperator.identity();
+            for (byte[] frame : held) {
+                inner.publish(frame);
+            }
+            held.clear();
+        }
+
+        Lossy(MatchBus inner) {
+            this.inner = inner;
+        }
+
+        @Override
+        public void publish(byte[] frame) {
+            published.add(frame.clone());
+            byte[] out = filter.apply(frame);
+            if (out != null) inner.publish(out);
+        }
+
+        @Override
+        public void subscribe(Consumer<byte[]> receiver) {
+            inner.subscribe(receiver);
+        }
+
+        @Override
+        public void close() {
+            inner.close();
+        }
+    }
+
+    // the plugin's side: matches by id, their rosters, and the order
+    // players were joined in
+    private static final class Backend implements MatchSync.Host {
+        final Map<String, Match> matches = new HashMap<>();
+        final List<UUID> joined = new ArrayList<>();
+
+        @Override
+        public Match match(String id) {
+            return matches.computeIfAbsent(id, Match::new);
+        }
+
+        @Override
+        public void remoteClock(Match match, long startedAt) {
+            match.gameStartTime = startedAt;
+        }
+
+        @Override
+        public void remoteJoin(Match match, UUID id, boolean hunter) {
+            if (joined.contains(id)) return;
+            joined.add(id);
+            if (hunter) match.hunters.put(id, new HunterState(id, match));
+            else match.runners.add(id);
+        }
+
+        @Override
+        public void remoteLeave(Match match, UUID id) {
+            joined.remove(id);
+            match.hunters.remove(id);
+            match.removeRunner(id);
+        }
+
+        // a join made on this backend, and what it tells the others
+        void join(MatchSync sync, Match match, UUID id, boolean hunter) {
+            remoteJoin(match, id, hunter);
+            sync.joined(match, id, hunter);
+        }
+
+        void leave(MatchSync sync, Match match, UUID id) {
+            remoteLeave(match, id);
+            sync.left(match, id);
+        }
+    }
+
+    private World world;
+    private Lossy busA;
+    private MatchSync a, b;
+    private Backend backendA, backendB;
+    private Match matchA;
+    private long tick;
+
+    @BeforeEach
+    void setUp() {
+        StandIns.install();
+        world = StandIns.world("world");
+        MatchBus.Loopback.Hub hub = new MatchBus.Loopback.Hub();
+        backendA = new Backend();
+        backendB = new Backend();
+        busA = new Lossy(hub.join());
+        a = new MatchSync(busA, SECRET, new Scheduling(null), backendA, 1);
+        b = new MatchSync(hub.join(), SECRET, new Scheduling(null), backendB, 1);
+        matchA = backendA.match(MATCH_ID);
+        matchA.mines.setListener(a.mineListener(matchA));
+    }
+
+    // one flush from a, delivered and applied on b
+    private void flush() {
+        tick++;
+        a.tick(tick, backendA.matches.values());
+        StandIns.runAsync();
+        b.tick(tick, backendB.matches.values());
+    }
+
+    // up to and including the given tick; a resync goes out every 50
+    private void flushUntil(long until) {
+        while (tick < until) {
+            flush();
+        }
+    }
+
+    private MineIndex.Mine placeOnA(int x, UUID owner) {
+        matchA.mines.add(world, x, 64, 0, owner, System.currentTimeMillis());
+        return matchA.mines.get(world.getUID(), MineIndex.pack(x, 64, 0));
+    }
+
+    private void triggerOnA(int x) {
+        matchA.mines.pollAlong(world, x + 0.5, 64, 0.5, x + 0.5, 64, 0.5, new ArrayList<>());
+    }
+
+    private MineIndex.Mine onB(int x) {
+        return backendB.match(MATCH_ID).mines.get(world.getUID(), MineIndex.pack(x, 64, 0));
+    }
+
+    private RunnerTracker.Snapshot runner() {
+        return new RunnerTracker.Snapshot(UUID.randomUUID());
+    }
+
+    private void move(RunnerTracker.Snapshot runner, double x, double y, double z) {
+        a.runnerMoved(matchA, runner, new Location(world, x, y, z));
+    }
+
+    // where b thinks the runner is, null if b hasn't placed them
+    private Location onB(RunnerTracker.Snapshot runner) {
+        Match match = backendB.matches.get(MATCH_ID);
+        if (match == null) return null;
+        RunnerTracker.Snapshot seen = match.runnerSnapshots.get(runner.id);
+        return seen == null ? null : seen.position();
+    }
+
+    private static void assertAt(Location at, double x, double y, double z) {
+        assertNotNull(at);
+        assertEquals(x, at.getX(), 1.0 / 32);
+        assertEquals(y, at.getY(), 1.0 / 32);
+        assertEquals(z, at.getZ(), 1.0 / 32);
+    }
+
+    @Test
+    void keyframeThenDelta() {
+        RunnerTracker.Snapshot runner = runner();
+        move(runner, 10.5, 64, -3.25);
+        flush();
+        assertAt(onB(runner), 10.5, 64, -3.25);
+
+        move(runner, 12.0, 64.5, -4.0);
+        flush();
+        assertAt(onB(runner), 12.0, 64.5, -4.0);
+
+        // the second frame only carried a delta
+        assertEquals(2, busA.published.size());
+        assertTrue(busA.published.get(1).length < busA.published.get(0).length);
+        assertEquals(0, b.framesDropped.sum());
+    }
+
+    @Test
+    void lostKeyframeSkipsDeltasUntilTheNextKeyframe() {
+        RunnerTracker.Snapshot runner = runner();
+        busA.filter = frame -> null;
+        move(runner, 10, 64, 10);
+        flush();
+        busA.filter = UnaryOperator.identity();
+
+        // relative to the keyframe b never got: ignored, not misplaced
+        move(runner, 11, 64, 10);
+        flush();
+        assertNull(onB(runner));
+        assertEquals(0, b.framesDropped.sum());
+
+        // too far for a delta, so a keyframe goes out and b catches up
+        move(runner, 5000, 64, 10);
+        flush();
+        assertAt(onB(runner), 5000, 64, 10);
+    }
+
+    @Test
+    void recordsCutAtAFrameBoundaryStillResolve() {
+        List<RunnerTracker.Snapshot> runners = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            RunnerTracker.Snapshot runner = runner();
+            runners.add(runner);
+            move(runner, i, 64, -i);
+        }
+        flush();
+        assertTrue(busA.published.size() > 1, "200 keyframes should need more than one frame");
+        for (byte[] frame : busA.published) {
+            assertTrue(frame.length <= 1200, "frame of " + frame.length + " bytes");
+        }
+        for (int i = 0; i < runners.size(); i++) {
+            assertAt(onB(runners.get(i)), i, 64, -i);
+        }
+
+        // deltas against every keyframe, including the one that was cut
+        // and re-sent at the top of the next frame
+        for (int i = 0; i < runners.size(); i++) {
+            move(runners.get(i), i + 0.5, 64, -i - 0.5);
+        }
+        flush();
+        for (int i = 0; i < runners.size(); i++) {
+            assertAt(onB(runners.get(i)), i + 0.5, 64, -i - 0.5);
+        }
+        assertEquals(0, b.framesDropped.sum());
+    }
+
+    @Test
+    void truncatedFrameIsDroppedWhole() {
+        UUID hunter = UUID.randomUUID();
+        busA.filter = frame -> Arrays.copyOf(frame, frame.length / 2);
+        a.joined(matchA, hunter, true);
+        flush();
+        assertEquals(1, b.framesDropped.sum());
+        assertTrue(backendB.joined.isEmpty());
+
+        // the next whole frame still gets through
+        busA.filter = UnaryOperator.identity();
+        a.joined(matchA, hunter, true);
+        flush();
+        assertEquals(List.of(hunter), backendB.joined);
+    }
+
+    @Test
+    void tamperedAndReplayedFramesAreDropped() {
+        UUID hunter = UUID.randomUUID();
+        busA.filter = frame -> {
+            frame[frame.length / 2] ^= 1;
+            return frame;
+        };
+        a.joined(matchA, hunter, true);
+        flush();
+        assertEquals(1, b.framesDropped.sum());
+        assertTrue(backendB.joined.isEmpty());
+
+        busA.filter = UnaryOperator.identity();
+        a.joined(matchA, hunter, true);
+        flush();
+        assertEquals(List.of(hunter), backendB.joined);
+
+        // the same frame again, as if captured and re-sent
+        busA.inner.publish(busA.published.get(busA.published.size() - 1));
+        flush();
+        assertEquals(2, b.framesDropped.sum());
+        assertEquals(List.of(hunter), backendB.joined);
+    }
+
+    @Test
+    void reorderedFramesAreBothApplied() {
+        UUID first = UUID.randomUUID(), second = UUID.randomUUID();
+        busA.hold();
+        a.joined(matchA, first, true);
+        flush();
+        busA.filter = UnaryOperator.identity();
+        a.joined(matchA, second, true);
+        flush();
+
+        busA.release();
+        flush();
+        assertEquals(List.of(second, first), backendB.joined);
+        assertEquals(0, b.framesDropped.sum());
+    }
+
+    @Test
+    void lateFrameDoesntMoveARunnerBack() {
+        RunnerTracker.Snapshot runner = runner();
+        move(runner, 10, 64, 10);
+        flush();
+        busA.hold();
+        move(runner, 11, 64, 10);
+        flush();
+        busA.filter = UnaryOperator.identity();
+        move(runner, 12, 64, 10);
+        flush();
+        assertAt(onB(runner), 12, 64, 10);
+
+        busA.release();
+        flush();
+        assertAt(onB(runner), 12, 64, 10);
+        assertEquals(0, b.framesDropped.sum());
+    }
+
+    @Test
+    void framesOlderThanTheReplayWindowAreDropped() {
+        UUID late = UUID.randomUUID();
+        busA.hold();
+        a.joined(matchA, late, true);
+        flush();
+        busA.filter = UnaryOperator.identity();
+        for (int i = 0; i < 64; i++) {
+            a.joined(matchA, UUID.randomUUID(), false);
+            flush();
+        }
+
+        busA.release();
+        flush();
+        assertEquals(1, b.framesDropped.sum());
+        assertFalse(backendB.joined.contains(late));
+    }
+
+    @Test
+    void aLateClockWithAnOlderStampIsIgnored() {
+        Match matchB = backendB.match(MATCH_ID);
+        matchA.gameStartTime = System.currentTimeMillis();
+        a.clock(matchA);
+        flush();
+        assertTrue(matchB.isRunning());
+
+        // a stop that arrives after the restart it came before
+        busA.hold();
+        matchA.gameStartTime = -1L;
+        a.clock(matchA);
+        flush();
+        busA.filter = UnaryOperator.identity();
+        matchA.gameStartTime = System.currentTimeMillis();
+        a.clock(matchA);
+        flush();
+
+        busA.release();
+        flush();
+        assertTrue(matchB.isRunning());
+        assertEquals(3, matchB.clockStamp);
+    }
+
+    @Test
+    void concurrentClocksSettleOnTheHigherNode() {
+        Match matchB = backendB.match(MATCH_ID);
+        // a starts and b stops at the same stamp, before hearing of each other
+        matchA.gameStartTime = System.currentTimeMillis();
+        a.clock(matchA);
+        b.clock(matchB);
+        long nodeA = matchA.clockNode, nodeB = matchB.clockNode;
+        for (int i = 0; i < 3; i++) {
+            flush();
+        }
+
+        long winner = Math.max(nodeA, nodeB);
+        assertEquals(winner, matchA.clockNode);
+        assertEquals(winner, matchB.clockNode);
+        assertEquals(1, matchA.clockStamp);
+        assertEquals(1, matchB.clockStamp);
+        assertEquals(winner == nodeA, matchA.isRunning());
+        assertEquals(winner == nodeA, matchB.isRunning());
+    }
+
+    @Test
+    void minesPlacedAndTriggeredReachTheOtherBackend() {
+        UUID owner = UUID.randomUUID();
+        MineIndex.Mine placed = placeOnA(5, owner);
+        flush();
+        MineIndex.Mine copy = onB(5);
+        assertNotNull(copy);
+        assertEquals(owner, copy.ownerId);
+        assertEquals(placed.expiresAt, copy.expiresAt, 1_000);
+
+        triggerOnA(5);
+        flush();
+        assertNull(onB(5));
+    }
+
+    @Test
+    void leaveReachesTheOtherBackend() {
+        UUID hunter = UUID.randomUUID();
+        backendA.join(a, matchA, hunter, true);
+        flush();
+        Match matchB = backendB.match(MATCH_ID);
+        assertTrue(matchB.hunters.containsKey(hunter));
+
+        backendA.leave(a, matchA, hunter);
+        flush();
+        assertFalse(matchB.hunters.containsKey(hunter));
+        assertTrue(backendB.joined.isEmpty());
+    }
+
+    @Test
+    void lostJoinAndPlacementComeWithTheNextResync() {
+        UUID runner = UUID.randomUUID();
+        busA.filter = frame -> null;
+        backendA.join(a, matchA, runner, false);
+        placeOnA(7, UUID.randomUUID());
+        flush();
+        busA.filter = UnaryOperator.identity();
+        assertFalse(backendB.match(MATCH_ID).runners.contains(runner));
+        assertNull(onB(7));
+
+        flushUntil(50);
+        assertTrue(backendB.match(MATCH_ID).runners.contains(runner));
+        assertNotNull(onB(7));
+    }
+
+    @Test
+    void lostLeaveAndRemovalAreRepairedAfterTheGrace() {
+        UUID gone = UUID.randomUUID(), staying = UUID.randomUUID();
+        backendA.join(a, matchA, gone, true);
+        backendA.join(a, matchA, staying, true);
+        placeOnA(1, gone);
+        placeOnA(2, staying);
+        flush();
+        Match matchB = backendB.match(MATCH_ID);
+        assertEquals(Set.of(gone, staying), matchB.hunters.keySet());
+
+        busA.filter = frame -> null;
+        backendA.leave(a, matchA, gone);
+        triggerOnA(1);
+        flush();
+        busA.filter = UnaryOperator.identity();
+
+        // b heard a's first resync round, then one that left them out
+        flushUntil(100);
+        assertTrue(matchB.hunters.containsKey(gone));
+        assertNotNull(onB(1));
+
+        // missing from two rounds in a row
+        flushUntil(150);
+        assertEquals(Set.of(staying), matchB.hunters.keySet());
+        assertNull(onB(1));
+        assertNotNull(onB(2));
+        // and b's own resyncs didn't hand them back to a
+        assertEquals(Set.of(staying), matchA.hunters.keySet());
+        assertNull(matchA.mines.get(world.getUID(), MineIndex.pack(1, 64, 0)));
+        assertEquals(0, b.framesDropped.sum());
+    }
+}
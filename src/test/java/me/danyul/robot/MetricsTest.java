@@ -0,0 +1,60 @@
+package me.danyul.robot;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void prometheusBucketsUseInclusiveUpperBounds() throws IOException {
+        Metrics metrics = new Metrics();
+        Metrics.Histogram tick = metrics.histogram("tick");
+        // bucket 0 [0,2), bucket 1 [2,4), bucket 9 [512,1024), bucket 10
+        // [1024,2048), and one past the last bucket's range
+        for (long nanos : new long[]{0, 1, 3, 512, 1023, 1024, 1L << 45}) {
+            tick.record(nanos);
+        }
+        metrics.gauge("matches", () -> 2);
+        metrics.counter("casts_total", "ability=\"emp\"").increment();
+
+        Path file = dir.resolve("metrics.prom");
+        metrics.writePrometheus(file);
+
+        assertEquals(String.join("\n",
+                "# TYPE robothunter_tick_nanos histogram",
+                "robothunter_tick_nanos_bucket{le=\"1\"} 2",
+                "robothunter_tick_nanos_bucket{le=\"3\"} 3",
+                "robothunter_tick_nanos_bucket{le=\"1023\"} 5",
+                "robothunter_tick_nanos_bucket{le=\"2047\"} 6",
+                "robothunter_tick_nanos_bucket{le=\"+Inf\"} 7",
+                "robothunter_tick_nanos_sum " + (0 + 1 + 3 + 512 + 1023 + 1024 + (1L << 45)),
+                "robothunter_tick_nanos_count 7",
+                "# TYPE robothunter_matches gauge",
+                "robothunter_matches 2",
+                "# TYPE robothunter_casts_total counter",
+                "robothunter_casts_total{ability=\"emp\"} 1",
+                ""), Files.readString(file, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void percentileIsTheBucketsLargestValue() {
+        Metrics.Histogram h = new Metrics().histogram("h");
+        for (int i = 0; i < 99; i++) {
+            h.record(600);
+        }
+        h.record(5000);
+        assertEquals(1023, h.percentile(0.50));
+        // capped at the largest sample seen
+        assertEquals(5000, h.percentile(1.0));
+    }
+}
@@ -0,0 +1,74 @@
+package me.danyul.robot;
+
+import org.bukkit.World;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MineIndexTest {
+
+    private static final UUID WORLD = UUID.nameUUIDFromBytes("world".getBytes());
+    private static final UUID OWNER = UUID.randomUUID();
+
+    private static long cell(int x) {
+        return MineIndex.pack(x, 64, 0);
+    }
+
+    private static List<Integer> cells(MineIndex mines) {
+        List<Integer> xs = new ArrayList<>();
+        for (MineIndex.Mine mine : mines.snapshot()) {
+            xs.add(mine.x());
+        }
+        xs.sort(null);
+        return xs;
+    }
+
+    @Test
+    void restoresInAnyOrderStillExpireOnTime() {
+        MineIndex mines = new MineIndex();
+        // a long-lived mine first, then ones that expire before it, as a
+        // synced backend might deliver them
+        mines.restore(WORLD, cell(1), OWNER, 5_000L);
+        mines.restore(WORLD, cell(2), OWNER, 1_000L);
+        mines.restore(WORLD, cell(3), OWNER, Long.MAX_VALUE);
+        mines.restore(WORLD, cell(4), OWNER, 3_000L);
+        mines.restore(WORLD, cell(5), OWNER, 2_000L);
+
+        mines.purgeExpired(2_500L);
+        assertEquals(List.of(1, 3, 4), cells(mines));
+        mines.purgeExpired(5_000L);
+        assertEquals(List.of(3), cells(mines));
+    }
+
+    @Test
+    void localMinesBehindRestoredOnesStillExpire() {
+        StandIns.install();
+        World world = StandIns.world("world");
+        MineIndex mines = new MineIndex();
+        mines.configure(1_000L, 0);
+        mines.restore(world.getUID(), cell(1), OWNER, 60_000L);
+        mines.add(world, 2, 64, 0, OWNER, 0L); // expires at 1000
+        // a reload shortens the ttl: later placements expire sooner
+        mines.configure(300L, 0);
+        mines.add(world, 3, 64, 0, OWNER, 500L); // expires at 800
+
+        mines.purgeExpired(900L);
+        assertEquals(List.of(1, 2), cells(mines));
+        mines.purgeExpired(1_000L);
+        assertEquals(List.of(1), cells(mines));
+    }
+
+    @Test
+    void removedMinesDontHoldUpTheQueue() {
+        MineIndex mines = new MineIndex();
+        mines.restore(WORLD, cell(1), OWNER, 1_000L);
+        mines.restore(WORLD, cell(2), OWNER, 2_000L);
+        mines.removeAt(WORLD, cell(1));
+        mines.purgeExpired(2_000L);
+        assertTrue(mines.isEmpty());
+    }
+}
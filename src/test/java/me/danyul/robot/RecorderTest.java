@@ -0,0 +1,93 @@
+package me.danyul.robot;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecorderTest {
+
+    @TempDir
+    Path dir;
+
+    private Path onlyFile() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            List<Path> all = files.toList();
+            assertEquals(1, all.size());
+            return all.get(0);
+        }
+    }
+
+    @Test
+    void closedFileEndsWithAnEndRecord() throws IOException {
+        Recorder recorder = new Recorder(dir, Logger.getLogger("test"));
+        UUID runner = UUID.randomUUID();
+        int stream = recorder.begin("main", 1000L);
+        recorder.record(stream, Recorder.RUNNER_POS, (byte) 0, 0f, runner, null, UUID.randomUUID(), 1.5, 64, -2.5);
+        recorder.end(stream);
+        recorder.shutdown();
+
+        List<Byte> types = new ArrayList<>();
+        RecordingReader.Header header = RecordingReader.forEach(onlyFile(), (h, e) -> types.add(e.type));
+        assertEquals(List.of(Recorder.START, Recorder.RUNNER_POS, Recorder.STOP), types);
+        assertTrue(header.complete);
+        assertEquals(0, header.dropped);
+    }
+
+    @Test
+    void fullRingStillClosesTheFileAndCountsWhatItLost() throws IOException {
+        Recorder recorder = new Recorder(dir, Logger.getLogger("test"));
+        UUID runner = UUID.randomUUID();
+        int stream = recorder.begin("main", 1000L);
+        UUID world = UUID.randomUUID();
+        // far more than the ring holds, faster than the writer drains it
+        int attempts = 200_000;
+        for (int i = 0; i < attempts; i++) {
+            recorder.record(stream, Recorder.RUNNER_POS, (byte) 0, 0f, runner, null, world, i, 64, 0);
+        }
+        recorder.end(stream);
+        recorder.shutdown();
+
+        long[] positions = new long[1];
+        RecordingReader.Header header = RecordingReader.forEach(onlyFile(), (h, e) -> {
+            if (e.type == Recorder.RUNNER_POS) positions[0]++;
+        });
+        assertTrue(header.complete, "file has no end record");
+        assertEquals(recorder.dropped(), header.dropped);
+        // START and STOP can be dropped too
+        assertTrue(positions[0] + header.dropped >= attempts);
+        assertTrue(positions[0] + header.dropped <= attempts + 2);
+    }
+
+    @Test
+    void positionsKeepFullPrecisionAndTheirWorld() throws IOException {
+        Recorder recorder = new Recorder(dir, Logger.getLogger("test"));
+        UUID runner = UUID.randomUUID();
+        UUID overworld = UUID.randomUUID(), nether = UUID.randomUUID();
+        int stream = recorder.begin("main", 1000L);
+        recorder.record(stream, Recorder.RUNNER_POS, (byte) 0, 0f, runner, null, overworld, 1_000_000.25, 64, -2_500_000.75);
+        recorder.record(stream, Recorder.RUNNER_POS, (byte) 0, 0f, runner, null, nether, 125_000.25, 70, -312_500.75);
+        recorder.record(stream, Recorder.RUNNER_POS, (byte) 0, 0f, runner, null, overworld, 1_000_001.25, 64, -2_500_000.75);
+        recorder.end(stream);
+        recorder.shutdown();
+
+        List<double[]> seen = new ArrayList<>();
+        RecordingReader.Header header = RecordingReader.forEach(onlyFile(), (h, e) -> {
+            if (e.type == Recorder.RUNNER_POS) seen.add(new double[]{e.world, e.x, e.y, e.z});
+        });
+        assertEquals(List.of(overworld, nether), header.worlds);
+        assertEquals(3, seen.size());
+        assertArrayEquals(new double[]{1, 1_000_000.25, 64, -2_500_000.75}, seen.get(0));
+        assertArrayEquals(new double[]{2, 125_000.25, 70, -312_500.75}, seen.get(1));
+        assertArrayEquals(new double[]{1, 1_000_001.25, 64, -2_500_000.75}, seen.get(2));
+    }
+}
@@ -0,0 +1,258 @@
+package me.danyul.robot;
+
+import io.papermc.paper.threadedregions.scheduler.AsyncScheduler;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.boss.BossBar;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemFactory;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
+import org.bukkit.inventory.meta.CompassMeta;
+import org.bukkit.util.Vector;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+// just enough of Server / World / Player / Inventory / ItemMeta to drive the
+// plugin's logic offline. everything is a dynamic proxy: methods that
+// aren't answered below return null / 0 / false
+final class StandIns {
+
+    private StandIns() {
+    }
+
+    private static final Map<UUID, Player> PLAYERS = new ConcurrentHashMap<>();
+    private static final Map<UUID, World> WORLDS = new ConcurrentHashMap<>();
+    // work handed to the async scheduler, run by runAsync()
+    private static final Queue<Runnable> ASYNC = new ConcurrentLinkedQueue<>();
+    private static volatile boolean installed;
+
+    // ---------- server ----------
+
+    // installs a stand-in Bukkit server once per JVM; safe to call from every @Setup
+    static synchronized void install() {
+        if (installed) return;
+
+        ItemFactory items = proxy(ItemFactory.class, Map.of(
+                "getItemMeta", args -> meta(new HashMap<>()),
+                "isApplicable", args -> true,
+                "asMetaFor", args -> args[0],
+                "updateMaterial", args -> args[1],
+                "equals", args -> Objects.equals(args[0], args[1])
+        ));
+        Logger logger = Logger.getLogger("stand-in");
+
+        Map<String, Function<Object[], Object>> answers = new HashMap<>();
+        answers.put("getPlayer", args -> args[0] instanceof UUID ? PLAYERS.get(args[0]) : null);
+        answers.put("getOnlinePlayers", args -> Collections.unmodifiableCollection(PLAYERS.values()));
+        answers.put("getWorld", args -> args[0] instanceof UUID ? WORLDS.get(args[0])
+                : WORLDS.get(UUID.nameUUIDFromBytes(((String) args[0]).getBytes())));
+        answers.put("getItemFactory", args -> items);
+        answers.put("getLogger", args -> logger);
+        answers.put("getName", args -> "stand-in");
+        answers.put("getVersion", args -> "stand-in");
+        answers.put("getBukkitVersion", args -> "stand-in");
+        answers.put("createInventory", args -> inventory((Integer) args[1]));
+        answers.put("createBossBar", args -> proxy(BossBar.class, Map.of()));
+        answers.put("getAsyncScheduler", args -> proxy(AsyncScheduler.class, Map.of("runNow", a -> {
+            @SuppressWarnings("unchecked")
+            Consumer<ScheduledTask> task = (Consumer<ScheduledTask>) a[1];
+            ASYNC.add(() -> task.accept(null));
+            return null;
+        })));
+        // one thread runs everything offline, so every region is "ours"
+        answers.put("isOwnedByCurrentRegion", args -> true);
+        Server server = proxy(Server.class, answers);
+
+        // Bukkit.setServer also prints build info that doesn't exist offline
+        try {
+            Field field = Bukkit.class.getDeclaredField("server");
+            field.setAccessible(true);
+            field.set(null, server);
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException("could not install stand-in server", ex);
+        }
+        installed = true;
+    }
+
+    // runs what's been handed to the async scheduler so far, on this thread
+    static void runAsync() {
+        Runnable task;
+        while ((task = ASYNC.poll()) != null) {
+            task.run();
+        }
+    }
+
+    // ---------- world ----------
+
+    // flat: stone up to y 63, air above, every chunk loaded
+    static World world(String name) {
+        UUID uid = UUID.nameUUIDFromBytes(name.getBytes());
+        ChunkSnapshot flat = proxy(ChunkSnapshot.class, Map.of(
+                "getHighestBlockYAt", args -> 63,
+                "getBlockType", args -> (Integer) args[1] <= 63 ? Material.STONE : Material.AIR
+        ));
+        Chunk chunk = proxy(Chunk.class, Map.of("getChunkSnapshot", args -> flat));
+        World world = proxy(World.class, Map.of(
+                "getName", args -> name,
+                "getUID", args -> uid,
+                "getMinHeight", args -> -64,
+                "getMaxHeight", args -> 320,
+                "isChunkLoaded", args -> true,
+                "getChunkAt", args -> chunk
+        ));
+        WORLDS.put(uid, world);
+        return world;
+    }
+
+    // ---------- players ----------
+
+    // a player whose position is the mutable Location passed in
+    static Player player(String name, Location position) {
+        UUID id = UUID.nameUUIDFromBytes(name.getBytes());
+        PlayerInventory inv = inventory(41);
+        Player player = proxy(Player.class, Map.of(
+                "getUniqueId", args -> id,
+                "getName", args -> name,
+                "isOnline", args -> true,
+                "getWorld", args -> position.getWorld(),
+                "getInventory", args -> inv,
+                "getLocation", args -> {
+                    if (args == null || args.length == 0) return position.clone();
+                    Location out = (Location) args[0];
+                    out.setWorld(position.getWorld());
+                    out.setX(position.getX());
+                    out.setY(position.getY());
+                    out.setZ(position.getZ());
+                    return out;
+                },
+                "addPotionEffect", args -> true,
+                "getVelocity", args -> new Vector()
+        ));
+        PLAYERS.put(id, player);
+        return player;
+    }
+
+    static void forgetPlayers() {
+        PLAYERS.clear();
+    }
+
+    // ---------- inventories & item meta ----------
+
+    static PlayerInventory inventory(int size) {
+        ItemStack[] slots = new ItemStack[size];
+        Map<String, Function<Object[], Object>> answers = new HashMap<>();
+        answers.put("getSize", args -> slots.length);
+        answers.put("getItem", args -> args[0] instanceof Integer ? slots[(Integer) args[0]] : null);
+        answers.put("setItem", args -> {
+            slots[(Integer) args[0]] = (ItemStack) args[1];
+            return null;
+        });
+        answers.put("getItemInMainHand", args -> slots[0]);
+        answers.put("getContents", args -> slots.clone());
+        answers.put("first", args -> {
+            for (int i = 0; i < slots.length; i++) {
+                if (slots[i] != null && slots[i].getType() == args[0]) return i;
+            }
+            return -1;
+        });
+        answers.put("addItem", args -> {
+            HashMap<Integer, ItemStack> leftover = new HashMap<>();
+            ItemStack[] stacks = (ItemStack[]) args[0];
+            outer:
+            for (int s = 0; s < stacks.length; s++) {
+                for (int i = 0; i < slots.length; i++) {
+                    if (slots[i] == null) {
+                        slots[i] = stacks[s];
+                        continue outer;
+                    }
+                }
+                leftover.put(s, stacks[s]);
+            }
+            return leftover;
+        });
+        return proxy(PlayerInventory.class, answers);
+    }
+
+    // property-bag item meta: setX/getX/hasX read and write one map,
+    // clone() copies it. implements CompassMeta so compasses work too
+    static CompassMeta meta(Map<String, Object> values) {
+        return (CompassMeta) Proxy.newProxyInstance(
+                StandIns.class.getClassLoader(),
+                new Class<?>[]{CompassMeta.class},
+                (proxy, method, args) -> {
+                    if (method.getDeclaringClass() == Object.class) return objectMethod(proxy, method, args);
+                    String name = method.getName();
+                    if (name.equals("clone")) return meta(new HashMap<>(values));
+                    if (name.startsWith("set") && args != null && args.length == 1) {
+                        values.put(name.substring(3), args[0]);
+                        return null;
+                    }
+                    if (name.startsWith("get") && (args == null || args.length == 0)) {
+                        return values.getOrDefault(name.substring(3), zero(method.getReturnType()));
+                    }
+                    if (name.startsWith("has") && (args == null || args.length == 0)) {
+                        return values.containsKey(name.substring(3));
+                    }
+                    if (name.equals("addEnchant")) {
+                        values.put("Enchant", args[0]);
+                        return true;
+                    }
+                    return zero(method.getReturnType());
+                });
+    }
+
+    static ItemStack compass() {
+        return new ItemStack(Material.COMPASS);
+    }
+
+    // ---------- proxy plumbing ----------
+
+    @SuppressWarnings("unchecked")
+    static <T> T proxy(Class<T> type, Map<String, Function<Object[], Object>> answers) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) return objectMethod(proxy, method, args);
+            Function<Object[], Object> answer = answers.get(method.getName());
+            return answer != null ? answer.apply(args) : zero(method.getReturnType());
+        };
+        return (T) Proxy.newProxyInstance(StandIns.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object objectMethod(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            default:
+                return "StandIn@" + Integer.toHexString(System.identityHashCode(proxy));
+        }
+    }
+
+    private static Object zero(Class<?> type) {
+        if (!type.isPrimitive() || type == void.class) return null;
+        if (type == boolean.class) return false;
+        if (type == char.class) return '\0';
+        if (type == long.class) return 0L;
+        if (type == float.class) return 0f;
+        if (type == double.class) return 0d;
+        if (type == int.class) return 0;
+        if (type == short.class) return (short) 0;
+        return (byte) 0;
+    }
+}